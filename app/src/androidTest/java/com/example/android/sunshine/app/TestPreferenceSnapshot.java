@@ -0,0 +1,88 @@
+/*
+ * Copyright (C) 2015 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.sunshine.app;
+
+import android.content.SharedPreferences;
+import android.preference.PreferenceManager;
+import android.test.AndroidTestCase;
+
+import com.example.android.sunshine.app.sync.SunshineSyncAdapter;
+import com.example.android.sunshine.app.utils.PollingCheck;
+
+public class TestPreferenceSnapshot extends AndroidTestCase {
+
+    private SharedPreferences mPrefs;
+    private String mLocationKey;
+    private String mSavedLocation;
+    private int mSavedLocationStatus;
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+        mPrefs = PreferenceManager.getDefaultSharedPreferences(mContext);
+        mLocationKey = mContext.getString(R.string.pref_location_key);
+        mSavedLocation = Utility.getPreferredLocation(mContext);
+        mSavedLocationStatus = Utility.getLocationStatus(mContext);
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        mPrefs.edit().putString(mLocationKey, mSavedLocation).commit();
+        PreferenceSnapshot.putLocationStatus(mContext, mSavedLocationStatus, true);
+        super.tearDown();
+    }
+
+    /*
+        The snapshot should be reused until a preference changes, and then be replaced by one
+        with the new value.
+     */
+    public void testRefreshedWhenPreferencesChange() {
+        final PreferenceSnapshot snapshot = PreferenceSnapshot.get(mContext);
+        assertSame("Error: The snapshot wasn't reused", snapshot,
+                PreferenceSnapshot.get(mContext));
+        assertEquals(mPrefs.getString(mLocationKey, null), snapshot.getLocation());
+
+        final String location = mSavedLocation + "-changed";
+        mPrefs.edit().putString(mLocationKey, location).commit();
+
+        // Listeners are called on the main thread.
+        new PollingCheck() {
+            @Override
+            protected boolean check() {
+                return location.equals(Utility.getPreferredLocation(mContext));
+            }
+        }.run();
+        assertEquals("Error: Only the location should have changed", snapshot.isMetric(),
+                PreferenceSnapshot.get(mContext).isMetric());
+    }
+
+    /*
+        The location status is read from other preference listeners, so it has to be in the
+        snapshot as soon as it is written.
+     */
+    public void testLocationStatusIsPublishedWithTheWrite() {
+        PreferenceSnapshot.putLocationStatus(mContext,
+                SunshineSyncAdapter.LOCATION_STATUS_INVALID, true);
+        assertEquals("Error: The location status wasn't published with the write",
+                SunshineSyncAdapter.LOCATION_STATUS_INVALID, Utility.getLocationStatus(mContext));
+
+        Utility.resetLocationStatus(mContext);
+        assertEquals("Error: The reset location status wasn't published",
+                SunshineSyncAdapter.LOCATION_STATUS_UNKNOWN, Utility.getLocationStatus(mContext));
+        assertEquals(SunshineSyncAdapter.LOCATION_STATUS_UNKNOWN,
+                mPrefs.getInt(mContext.getString(R.string.pref_location_status_key), -1));
+    }
+}
@@ -0,0 +1,72 @@
+/*
+ * Copyright (C) 2015 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.sunshine.app.data;
+
+import android.content.ContentValues;
+import android.test.AndroidTestCase;
+
+import com.example.android.sunshine.app.data.WeatherContract.LocationEntry;
+import com.example.android.sunshine.app.data.WeatherContract.WeatherEntry;
+
+public class TestCurrentConditions extends AndroidTestCase {
+
+    private long mLocationRowId;
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+        mContext.getContentResolver().delete(WeatherEntry.CONTENT_URI, null, null);
+        mContext.getContentResolver().delete(LocationEntry.CONTENT_URI, null, null);
+        mLocationRowId = TestUtilities.insertNorthPoleLocationValues(mContext);
+    }
+
+    public void testNothingStored() {
+        assertNull("Error: Got conditions for a location without any weather",
+                CurrentConditions.get(mContext, TestUtilities.TEST_LOCATION));
+    }
+
+    /*
+        Once loaded, the conditions should be served from memory until the provider writes
+        weather again.
+     */
+    public void testPublishedUntilWeatherIsWritten() {
+        insertToday(321, 75);
+
+        CurrentConditions loaded = CurrentConditions.load(mContext, TestUtilities.TEST_LOCATION);
+        assertNotNull(loaded);
+        assertEquals(321, loaded.getWeatherId());
+        assertEquals(75.0, loaded.getMaxTemp());
+        assertSame("Error: The published conditions weren't reused", loaded,
+                CurrentConditions.get(mContext, TestUtilities.TEST_LOCATION));
+        assertNotSame("Error: Conditions for one location were returned for another", loaded,
+                CurrentConditions.get(mContext, "94043"));
+
+        insertToday(800, 80);
+
+        CurrentConditions reloaded = CurrentConditions.get(mContext, TestUtilities.TEST_LOCATION);
+        assertNotSame("Error: The conditions outlived a write to the weather", loaded, reloaded);
+        assertEquals(800, reloaded.getWeatherId());
+        assertEquals(80.0, reloaded.getMaxTemp());
+    }
+
+    private void insertToday(int weatherId, double maxTemp) {
+        ContentValues weatherValues = TestUtilities.createWeatherValues(mLocationRowId);
+        weatherValues.put(WeatherEntry.COLUMN_DATE, System.currentTimeMillis());
+        weatherValues.put(WeatherEntry.COLUMN_WEATHER_ID, weatherId);
+        weatherValues.put(WeatherEntry.COLUMN_MAX_TEMP, maxTemp);
+        mContext.getContentResolver().insert(WeatherEntry.CONTENT_URI, weatherValues);
+    }
+}
@@ -0,0 +1,138 @@
+/*
+ * Copyright (C) 2015 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.sunshine.app.data;
+
+import android.content.ContentValues;
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+import android.test.AndroidTestCase;
+import android.util.SparseArray;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/*
+    Builds the database as each earlier release of the app left it, upgrades it with
+    WeatherDbHelper, and checks that the rows survived and that the schema came out the same as
+    a freshly created one.
+
+    When you bump DATABASE_VERSION, add the schema you are leaving behind to HISTORICAL_SCHEMAS
+    (copy the statements out of onCreate as they are before your change).
+ */
+public class TestDbMigration extends AndroidTestCase {
+
+    private static final SparseArray<String[]> HISTORICAL_SCHEMAS = new SparseArray<String[]>();
+
+    static {
+        HISTORICAL_SCHEMAS.put(2, new String[]{
+                "CREATE TABLE location (" +
+                        "_id INTEGER PRIMARY KEY," +
+                        "location_setting TEXT UNIQUE NOT NULL, " +
+                        "city_name TEXT NOT NULL, " +
+                        "coord_lat REAL NOT NULL, " +
+                        "coord_long REAL NOT NULL  );",
+                "CREATE TABLE weather (" +
+                        "_id INTEGER PRIMARY KEY AUTOINCREMENT," +
+                        "location_id INTEGER NOT NULL, " +
+                        "date INTEGER NOT NULL, " +
+                        "short_desc TEXT NOT NULL, " +
+                        "weather_id INTEGER NOT NULL," +
+                        "min REAL NOT NULL, " +
+                        "max REAL NOT NULL, " +
+                        "humidity REAL NOT NULL, " +
+                        "pressure REAL NOT NULL, " +
+                        "wind REAL NOT NULL, " +
+                        "degrees REAL NOT NULL,  " +
+                        "FOREIGN KEY (location_id) REFERENCES location (_id),  " +
+                        "UNIQUE (date, location_id) ON CONFLICT REPLACE);"
+        });
+    }
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+        mContext.deleteDatabase(WeatherDbHelper.DATABASE_NAME);
+    }
+
+    public void testEveryVersionIsKept() {
+        for (int version = WeatherDbHelper.OLDEST_MIGRATED_VERSION;
+             version < WeatherDbHelper.DATABASE_VERSION; version++) {
+            assertNotNull("Error: No historical schema for version " + version,
+                    HISTORICAL_SCHEMAS.get(version));
+        }
+    }
+
+    public void testUpgradeKeepsRows() {
+        WeatherDbHelper latestHelper = new WeatherDbHelper(mContext);
+        Map<String, String> latestSchema = readSchema(latestHelper.getWritableDatabase());
+        latestHelper.close();
+
+        for (int version = WeatherDbHelper.OLDEST_MIGRATED_VERSION;
+             version < WeatherDbHelper.DATABASE_VERSION; version++) {
+            mContext.deleteDatabase(WeatherDbHelper.DATABASE_NAME);
+            SQLiteDatabase db = createDatabaseAtVersion(version);
+            long locationRowId = db.insert(WeatherContract.LocationEntry.TABLE_NAME, null,
+                    TestUtilities.createNorthPoleLocationValues());
+            assertTrue(locationRowId != -1);
+            ContentValues weatherValues = TestUtilities.createWeatherValues(locationRowId);
+            assertTrue(db.insert(WeatherContract.WeatherEntry.TABLE_NAME, null, weatherValues) != -1);
+            db.close();
+
+            WeatherDbHelper helper = new WeatherDbHelper(mContext);
+            db = helper.getWritableDatabase();
+            assertEquals(WeatherDbHelper.DATABASE_VERSION, db.getVersion());
+
+            assertEquals("Error: Upgrading from version " + version
+                            + " didn't produce the current schema",
+                    latestSchema, readSchema(db));
+
+            TestUtilities.validateCursor("Error: Location lost upgrading from version " + version,
+                    db.query(WeatherContract.LocationEntry.TABLE_NAME, null, null, null, null, null, null),
+                    TestUtilities.createNorthPoleLocationValues());
+            TestUtilities.validateCursor("Error: Weather lost upgrading from version " + version,
+                    db.query(WeatherContract.WeatherEntry.TABLE_NAME, null, null, null, null, null, null),
+                    weatherValues);
+            helper.close();
+        }
+    }
+
+    private SQLiteDatabase createDatabaseAtVersion(int version) {
+        SQLiteDatabase db = mContext.openOrCreateDatabase(
+                WeatherDbHelper.DATABASE_NAME, 0, null);
+        for (String statement : HISTORICAL_SCHEMAS.get(version)) {
+            db.execSQL(statement);
+        }
+        db.setVersion(version);
+        return db;
+    }
+
+    /**
+     * @return the SQL of every table and index, by name
+     */
+    private static Map<String, String> readSchema(SQLiteDatabase db) {
+        Map<String, String> schema = new HashMap<String, String>();
+        Cursor c = db.rawQuery("SELECT name, sql FROM sqlite_master"
+                + " WHERE type IN ('table', 'index') AND name NOT LIKE 'sqlite_%'"
+                + " AND name != 'android_metadata'", null);
+        while (c.moveToNext()) {
+            // Whitespace differs between a CREATE written out here and one built in onCreate.
+            String sql = c.isNull(1) ? "" : c.getString(1).replaceAll("\\s+", " ");
+            schema.put(c.getString(0), sql);
+        }
+        c.close();
+        return schema;
+    }
+}
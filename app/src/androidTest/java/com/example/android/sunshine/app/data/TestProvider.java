@@ -15,6 +15,7 @@
  */
 package com.example.android.sunshine.app.data;
 
+import android.annotation.TargetApi;
 import android.content.ComponentName;
 import android.content.ContentUris;
 import android.content.ContentValues;
@@ -24,6 +25,7 @@ import android.database.Cursor;
 import android.database.sqlite.SQLiteDatabase;
 import android.net.Uri;
 import android.os.Build;
+import android.os.Bundle;
 import android.test.AndroidTestCase;
 import android.util.Log;
 
@@ -512,4 +514,203 @@ public class TestProvider extends AndroidTestCase {
         }
         cursor.close();
     }
+
+    /*
+        The primitive WeatherBatch path should store exactly what a ContentValues bulkInsert of
+        the same rows stores.
+     */
+    public void testBulkInsertWeatherBatch() {
+        long locationRowId = TestUtilities.insertNorthPoleLocationValues(mContext);
+        ContentValues[] expectedValues = createBulkInsertWeatherValues(locationRowId);
+
+        WeatherBatch batch = new WeatherBatch(2);
+        for (ContentValues values : expectedValues) {
+            batch.add(locationRowId,
+                    values.getAsLong(WeatherEntry.COLUMN_DATE),
+                    values.getAsInteger(WeatherEntry.COLUMN_WEATHER_ID),
+                    values.getAsString(WeatherEntry.COLUMN_SHORT_DESC),
+                    values.getAsDouble(WeatherEntry.COLUMN_MIN_TEMP),
+                    values.getAsDouble(WeatherEntry.COLUMN_MAX_TEMP),
+                    values.getAsDouble(WeatherEntry.COLUMN_HUMIDITY),
+                    values.getAsDouble(WeatherEntry.COLUMN_PRESSURE),
+                    values.getAsDouble(WeatherEntry.COLUMN_WIND_SPEED),
+                    values.getAsDouble(WeatherEntry.COLUMN_DEGREES));
+            // The provider stores normalized dates.
+            values.put(WeatherEntry.COLUMN_DATE,
+                    WeatherContract.normalizeDate(values.getAsLong(WeatherEntry.COLUMN_DATE)));
+        }
+        assertEquals(BULK_INSERT_RECORDS_TO_INSERT, batch.size());
+
+        TestUtilities.TestContentObserver weatherObserver = TestUtilities.getTestContentObserver();
+        mContext.getContentResolver().registerContentObserver(WeatherEntry.CONTENT_URI, true, weatherObserver);
+
+        int insertCount = batch.insert(mContext.getContentResolver());
+
+        weatherObserver.waitForNotificationOrFail();
+        mContext.getContentResolver().unregisterContentObserver(weatherObserver);
+
+        assertEquals(BULK_INSERT_RECORDS_TO_INSERT, insertCount);
+
+        Cursor cursor = mContext.getContentResolver().query(
+                WeatherEntry.CONTENT_URI,
+                null,
+                null,
+                null,
+                WeatherEntry.COLUMN_DATE + " ASC"
+        );
+        assertEquals(BULK_INSERT_RECORDS_TO_INSERT, cursor.getCount());
+        cursor.moveToFirst();
+        for ( int i = 0; i < BULK_INSERT_RECORDS_TO_INSERT; i++, cursor.moveToNext() ) {
+            TestUtilities.validateCurrentRecord("testBulkInsertWeatherBatch.  Error validating WeatherEntry " + i,
+                    cursor, expectedValues[i]);
+        }
+        cursor.close();
+    }
+
+    /*
+        A forecast commit should replace each location's days from the first new one onwards,
+        add locations it hasn't seen, and drop everything before the prune date.
+     */
+    public void testCommitForecast() {
+        long dayInMillis = 1000 * 60 * 60 * 24;
+        long locationRowId = TestUtilities.insertNorthPoleLocationValues(mContext);
+
+        // One day that is too old to keep and one past the end of the new forecast, which the
+        // commit should replace along with the rest of the window.
+        ContentValues oldDay = TestUtilities.createWeatherValues(locationRowId);
+        oldDay.put(WeatherEntry.COLUMN_DATE, TestUtilities.TEST_DATE - 2 * dayInMillis);
+        ContentValues staleDay = TestUtilities.createWeatherValues(locationRowId);
+        staleDay.put(WeatherEntry.COLUMN_DATE, TestUtilities.TEST_DATE + 20 * dayInMillis);
+        mContext.getContentResolver().bulkInsert(WeatherEntry.CONTENT_URI,
+                new ContentValues[]{oldDay, staleDay});
+
+        WeatherBatch northPoleDays = new WeatherBatch(BULK_INSERT_RECORDS_TO_INSERT);
+        for (ContentValues values : createBulkInsertWeatherValues(0)) {
+            northPoleDays.add(0,
+                    values.getAsLong(WeatherEntry.COLUMN_DATE),
+                    values.getAsInteger(WeatherEntry.COLUMN_WEATHER_ID),
+                    values.getAsString(WeatherEntry.COLUMN_SHORT_DESC),
+                    values.getAsDouble(WeatherEntry.COLUMN_MIN_TEMP),
+                    values.getAsDouble(WeatherEntry.COLUMN_MAX_TEMP),
+                    values.getAsDouble(WeatherEntry.COLUMN_HUMIDITY),
+                    values.getAsDouble(WeatherEntry.COLUMN_PRESSURE),
+                    values.getAsDouble(WeatherEntry.COLUMN_WIND_SPEED),
+                    values.getAsDouble(WeatherEntry.COLUMN_DEGREES));
+        }
+        WeatherBatch newLocationDays = new WeatherBatch(1);
+        newLocationDays.add(0, TestUtilities.TEST_DATE, 800, "Clear", 10, 20, 30, 1000, 2, 90);
+
+        ForecastCommit commit = new ForecastCommit(
+                WeatherContract.normalizeDate(TestUtilities.TEST_DATE));
+        commit.addLocation(TestUtilities.TEST_LOCATION, "North Pole", 64.7488, -147.353,
+                northPoleDays);
+        commit.addLocation("94043", "Mountain View", 37.4, -122.1, newLocationDays);
+
+        TestUtilities.TestContentObserver weatherObserver = TestUtilities.getTestContentObserver();
+        mContext.getContentResolver().registerContentObserver(WeatherEntry.CONTENT_URI, true, weatherObserver);
+        int insertCount;
+        try {
+            insertCount = commit.commit(mContext.getContentResolver());
+        } catch (Exception e) {
+            throw new AssertionError(e);
+        }
+        weatherObserver.waitForNotificationOrFail();
+        mContext.getContentResolver().unregisterContentObserver(weatherObserver);
+
+        assertEquals(BULK_INSERT_RECORDS_TO_INSERT + 1, insertCount);
+
+        Cursor cursor = mContext.getContentResolver().query(
+                WeatherEntry.buildWeatherLocation(TestUtilities.TEST_LOCATION), null, null, null, null);
+        assertEquals("Error: The North Pole's forecast window wasn't replaced",
+                BULK_INSERT_RECORDS_TO_INSERT, cursor.getCount());
+        cursor.close();
+
+        cursor = mContext.getContentResolver().query(
+                WeatherEntry.buildWeatherLocation("94043"), null, null, null, null);
+        assertEquals("Error: The new location's forecast wasn't stored", 1, cursor.getCount());
+        cursor.close();
+
+        cursor = mContext.getContentResolver().query(LocationEntry.CONTENT_URI, null, null, null, null);
+        assertEquals("Error: The new location wasn't inserted exactly once", 2, cursor.getCount());
+        cursor.close();
+    }
+
+    /*
+        Writing one location's weather should reach observers of that location (and of all the
+        weather), but leave loaders on other locations alone.
+     */
+    public void testWeatherNotificationsAreScopedToLocation() throws InterruptedException {
+        long locationRowId = TestUtilities.insertNorthPoleLocationValues(mContext);
+
+        TestUtilities.TestContentObserver northPoleObserver = TestUtilities.getTestContentObserver();
+        TestUtilities.TestContentObserver dayObserver = TestUtilities.getTestContentObserver();
+        TestUtilities.TestContentObserver otherObserver = TestUtilities.getTestContentObserver();
+        mContext.getContentResolver().registerContentObserver(
+                WeatherEntry.buildWeatherLocation(TestUtilities.TEST_LOCATION), true,
+                northPoleObserver);
+        mContext.getContentResolver().registerContentObserver(
+                WeatherEntry.buildWeatherLocationWithDate(TestUtilities.TEST_LOCATION,
+                        TestUtilities.TEST_DATE), true, dayObserver);
+        mContext.getContentResolver().registerContentObserver(
+                WeatherEntry.buildWeatherLocation("94043"), true, otherObserver);
+
+        mContext.getContentResolver().bulkInsert(WeatherEntry.CONTENT_URI,
+                createBulkInsertWeatherValues(locationRowId));
+
+        northPoleObserver.waitForNotificationOrFail();
+        dayObserver.waitForNotificationOrFail();
+        // Give a stray notification the same time to arrive as the ones we waited for.
+        Thread.sleep(500);
+        otherObserver.mHT.quit();
+        mContext.getContentResolver().unregisterContentObserver(northPoleObserver);
+        mContext.getContentResolver().unregisterContentObserver(dayObserver);
+        mContext.getContentResolver().unregisterContentObserver(otherObserver);
+
+        assertFalse("Error: Inserting weather for one location notified another",
+                otherObserver.mContentChanged);
+    }
+
+    /*
+        Repeating a query for a location should be answered from the provider's cache, until
+        that location's weather is written.
+     */
+    public void testWeatherForLocationIsCached() {
+        if (Build.VERSION.SDK_INT < Build.VERSION_CODES.HONEYCOMB) {
+            return;
+        }
+        long locationRowId = TestUtilities.insertNorthPoleLocationValues(mContext);
+        ContentValues weatherValues = TestUtilities.createWeatherValues(locationRowId);
+        mContext.getContentResolver().insert(WeatherEntry.CONTENT_URI, weatherValues);
+        Uri locationUri = WeatherEntry.buildWeatherLocation(TestUtilities.TEST_LOCATION);
+
+        Bundle before = getQueryCacheStats();
+        queryAndValidate(locationUri, weatherValues);
+        queryAndValidate(locationUri, weatherValues);
+        Bundle after = getQueryCacheStats();
+        assertEquals("Error: The first query wasn't a cache miss",
+                before.getInt(WeatherContract.EXTRA_CACHE_MISSES) + 1,
+                after.getInt(WeatherContract.EXTRA_CACHE_MISSES));
+        assertEquals("Error: The repeated query wasn't a cache hit",
+                before.getInt(WeatherContract.EXTRA_CACHE_HITS) + 1,
+                after.getInt(WeatherContract.EXTRA_CACHE_HITS));
+
+        weatherValues.put(WeatherEntry.COLUMN_SHORT_DESC, "Meteors");
+        mContext.getContentResolver().update(WeatherEntry.CONTENT_URI, weatherValues,
+                WeatherEntry.COLUMN_LOC_KEY + " = ?", new String[]{Long.toString(locationRowId)});
+        queryAndValidate(locationUri, weatherValues);
+        assertEquals("Error: The query after a write was answered from the cache",
+                after.getInt(WeatherContract.EXTRA_CACHE_HITS),
+                getQueryCacheStats().getInt(WeatherContract.EXTRA_CACHE_HITS));
+    }
+
+    private void queryAndValidate(Uri uri, ContentValues expectedValues) {
+        Cursor cursor = mContext.getContentResolver().query(uri, null, null, null, null);
+        TestUtilities.validateCursor("Error validating " + uri, cursor, expectedValues);
+    }
+
+    @TargetApi(Build.VERSION_CODES.HONEYCOMB)
+    private Bundle getQueryCacheStats() {
+        return mContext.getContentResolver().call(WeatherContract.BASE_CONTENT_URI,
+                WeatherContract.METHOD_GET_QUERY_CACHE_STATS, null, null);
+    }
 }
@@ -0,0 +1,123 @@
+/*
+ * Copyright (C) 2015 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.sunshine.app.data;
+
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteQueryBuilder;
+import android.test.AndroidTestCase;
+
+import com.example.android.sunshine.app.data.WeatherContract.LocationEntry;
+import com.example.android.sunshine.app.data.WeatherContract.WeatherEntry;
+
+/*
+    Runs EXPLAIN QUERY PLAN over the queries the provider builds for each kind of URI, and fails
+    if SQLite would have to read a whole table to answer any of them.  Tables are tiny in tests,
+    so this is the only way to catch a missing index before users with a long history do.
+
+    This uses the provider's package-private query builder and selections, which is why it lives
+    in the data package.
+ */
+public class TestQueryPlan extends AndroidTestCase {
+
+    private static final String[] NO_ARGS = null;
+
+    private SQLiteDatabase mDb;
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+        mContext.deleteDatabase(WeatherDbHelper.DATABASE_NAME);
+        mDb = new WeatherDbHelper(mContext).getReadableDatabase();
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        mDb.close();
+        super.tearDown();
+    }
+
+    // "weather/*"
+    public void testWeatherWithLocation() {
+        assertNoFullScan("WEATHER_WITH_LOCATION",
+                WeatherProvider.sWeatherByLocationSettingQueryBuilder,
+                WeatherProvider.sLocationSettingSelection);
+    }
+
+    // "weather/*?date=", which is what the forecast list asks for
+    public void testWeatherWithLocationAndStartDate() {
+        assertNoFullScan("WEATHER_WITH_LOCATION and start date",
+                WeatherProvider.sWeatherByLocationSettingQueryBuilder,
+                WeatherProvider.sLocationSettingWithStartDateSelection);
+    }
+
+    // "weather/*/#"
+    public void testWeatherWithLocationAndDate() {
+        assertNoFullScan("WEATHER_WITH_LOCATION_AND_DATE",
+                WeatherProvider.sWeatherByLocationSettingQueryBuilder,
+                WeatherProvider.sLocationSettingAndDaySelection);
+    }
+
+    // "weather" takes the caller's selection.  The one the app uses is dropping old days,
+    // which is also what committing a forecast does.
+    public void testWeatherOlderThanDate() {
+        assertNoFullScan("WEATHER before a date", WeatherEntry.TABLE_NAME,
+                WeatherProvider.sBeforeDateSelection);
+    }
+
+    // Committing a forecast replaces a location's days from the first new one onwards.
+    public void testWeatherForLocationIdFromDate() {
+        assertNoFullScan("WEATHER for a location from a date", WeatherEntry.TABLE_NAME,
+                WeatherProvider.sLocationIdWithStartDateSelection);
+    }
+
+    // "location" takes the caller's selection.  The one the app uses is looking up a setting,
+    // which is also how committing a forecast finds the location.
+    public void testLocationBySetting() {
+        assertNoFullScan("LOCATION by setting", LocationEntry.TABLE_NAME,
+                WeatherProvider.sLocationSettingOnlySelection);
+    }
+
+    private void assertNoFullScan(String description, SQLiteQueryBuilder builder,
+                                  String selection) {
+        String sql = builder.buildQuery(null, selection, null, null,
+                WeatherEntry.COLUMN_DATE + " ASC", null);
+        assertNoFullScan(description, sql);
+    }
+
+    private void assertNoFullScan(String description, String table, String selection) {
+        SQLiteQueryBuilder builder = new SQLiteQueryBuilder();
+        builder.setTables(table);
+        assertNoFullScan(description, builder.buildQuery(null, selection, null, null, null, null));
+    }
+
+    private void assertNoFullScan(String description, String sql) {
+        Cursor plan = mDb.rawQuery("EXPLAIN QUERY PLAN " + sql, NO_ARGS);
+        try {
+            int detailIndex = plan.getColumnIndex("detail");
+            assertFalse("Error: No query plan for " + description, detailIndex == -1);
+            assertTrue("Error: Empty query plan for " + description, plan.moveToFirst());
+            do {
+                String step = plan.getString(detailIndex);
+                // SEARCH steps use an index to find the rows; SCAN steps read every row.
+                assertFalse("Error: " + description + " reads a whole table (" + step + ")\n" + sql,
+                        step.startsWith("SCAN"));
+            } while (plan.moveToNext());
+        } finally {
+            plan.close();
+        }
+    }
+}
@@ -0,0 +1,165 @@
+/*
+ * Copyright (C) 2015 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.sunshine.app.data;
+
+import android.content.ContentValues;
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+import android.os.Build;
+import android.test.AndroidTestCase;
+import android.util.Log;
+
+import com.example.android.sunshine.app.data.WeatherContract.WeatherEntry;
+
+import java.util.Arrays;
+import java.util.Locale;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+/*
+    Checks that reading the forecast doesn't have to wait for a sync that is writing one, and
+    measures how long reads take while syncs are running.
+ */
+public class TestReadContention extends AndroidTestCase {
+    public static final String LOG_TAG = TestReadContention.class.getSimpleName();
+
+    // Rows written by each simulated sync: two weeks for each of ten locations.
+    private static final int ROWS_PER_SYNC = 14 * 10;
+    private static final int SYNCS = 20;
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+        mContext.getContentResolver().delete(WeatherEntry.CONTENT_URI, null, null);
+        mContext.getContentResolver().delete(WeatherContract.LocationEntry.CONTENT_URI, null, null);
+    }
+
+    public void testDatabaseIsInWalMode() {
+        if (Build.VERSION.SDK_INT < Build.VERSION_CODES.HONEYCOMB) {
+            return;
+        }
+        WeatherDbHelper helper = new WeatherDbHelper(mContext);
+        Cursor cursor = helper.getWritableDatabase().rawQuery("PRAGMA journal_mode", null);
+        assertTrue(cursor.moveToFirst());
+        assertEquals("Error: The weather database isn't using write-ahead logging",
+                "wal", cursor.getString(0).toLowerCase(Locale.US));
+        cursor.close();
+        helper.close();
+    }
+
+    /*
+        Holds a write transaction open on one connection and reads on another.  The read has
+        to come back, with the data from before the write, while the transaction is still open.
+     */
+    public void testReadDuringOpenWriteTransaction() throws InterruptedException {
+        if (Build.VERSION.SDK_INT < Build.VERSION_CODES.HONEYCOMB) {
+            return;
+        }
+        final long locationRowId = TestUtilities.insertNorthPoleLocationValues(mContext);
+        WeatherDbHelper writerHelper = new WeatherDbHelper(mContext);
+        SQLiteDatabase writer = writerHelper.getWritableDatabase();
+        final WeatherDbHelper readerHelper = new WeatherDbHelper(mContext);
+
+        WeatherDbHelper.beginWriteTransaction(writer);
+        try {
+            writer.insert(WeatherEntry.TABLE_NAME, null,
+                    TestUtilities.createWeatherValues(locationRowId));
+
+            final CountDownLatch readDone = new CountDownLatch(1);
+            final int[] rowsSeen = {-1};
+            new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    Cursor cursor = readerHelper.getReadableDatabase().query(
+                            WeatherEntry.TABLE_NAME, null, null, null, null, null, null);
+                    rowsSeen[0] = cursor.getCount();
+                    cursor.close();
+                    readDone.countDown();
+                }
+            }).start();
+
+            assertTrue("Error: The read waited for the write transaction",
+                    readDone.await(2, TimeUnit.SECONDS));
+            assertEquals("Error: The read saw uncommitted rows", 0, rowsSeen[0]);
+        } finally {
+            writer.endTransaction();
+            writerHelper.close();
+            readerHelper.close();
+        }
+    }
+
+    /*
+        Benchmark: runs back to back bulk inserts through the provider on one thread while this
+        one queries the forecast list straight from the database, and logs the read latencies.
+        Look for the numbers under this test's LOG_TAG; the assertion only makes sure reads got
+        through during the writes.
+     */
+    public void testReadLatencyDuringSync() throws InterruptedException {
+        final long locationRowId = TestUtilities.insertNorthPoleLocationValues(mContext);
+        // The provider's own query, run on a connection of our own: going through the provider
+        // would measure WeatherQueryCache, which answers repeated reads without touching SQLite.
+        String[] forecastArgs = {TestUtilities.TEST_LOCATION,
+                Long.toString(TestUtilities.TEST_DATE)};
+        WeatherDbHelper readerHelper = new WeatherDbHelper(mContext);
+        SQLiteDatabase reader = readerHelper.getReadableDatabase();
+
+        final CountDownLatch writesDone = new CountDownLatch(1);
+        Thread writer = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                for (int sync = 0; sync < SYNCS; sync++) {
+                    mContext.getContentResolver().bulkInsert(
+                            WeatherEntry.CONTENT_URI, createRows(locationRowId));
+                }
+                writesDone.countDown();
+            }
+        });
+
+        long[] latencies = new long[10000];
+        int reads = 0;
+        writer.start();
+        while (writesDone.getCount() > 0 && reads < latencies.length) {
+            long start = System.nanoTime();
+            Cursor cursor = WeatherProvider.sWeatherByLocationSettingQueryBuilder.query(
+                    reader, null, WeatherProvider.sLocationSettingWithStartDateSelection,
+                    forecastArgs, null, null, WeatherEntry.COLUMN_DATE + " ASC");
+            cursor.getCount();
+            cursor.close();
+            latencies[reads++] = System.nanoTime() - start;
+        }
+        writer.join();
+        readerHelper.close();
+
+        assertTrue("Error: No reads completed while the syncs were writing", reads > 0);
+        Arrays.sort(latencies, 0, reads);
+        Log.i(LOG_TAG, String.format(Locale.US, "%d reads during %d syncs of %d rows: "
+                        + "median %.2f ms, 95th %.2f ms, max %.2f ms",
+                reads, SYNCS, ROWS_PER_SYNC,
+                latencies[reads / 2] / 1e6,
+                latencies[reads * 95 / 100] / 1e6,
+                latencies[reads - 1] / 1e6));
+    }
+
+    private static ContentValues[] createRows(long locationRowId) {
+        ContentValues[] rows = new ContentValues[ROWS_PER_SYNC];
+        long dayInMillis = 1000 * 60 * 60 * 24;
+        for (int i = 0; i < ROWS_PER_SYNC; i++) {
+            rows[i] = TestUtilities.createWeatherValues(locationRowId);
+            rows[i].put(WeatherEntry.COLUMN_DATE, TestUtilities.TEST_DATE + i * dayInMillis);
+        }
+        return rows;
+    }
+}
@@ -0,0 +1,218 @@
+/*
+ * Copyright (C) 2015 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.sunshine.app.sync;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.URL;
+import java.nio.charset.Charset;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * A tiny HTTP/1.1 server on the loopback interface that answers every request with the same
+ * forecast, so the sync pipeline can be run (and load tested) without OpenWeatherMap.
+ *
+ * {@link #transport()} returns a {@link ForecastTransport} that sends whatever URL the sync
+ * adapter builds to this server instead, through the real {@link HttpForecastTransport}.
+ */
+public class StubForecastServer {
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    private final ServerSocket mServerSocket;
+    private final Thread mAcceptThread;
+    private final AtomicInteger mConnectionCount = new AtomicInteger();
+    private final AtomicInteger mRequestCount = new AtomicInteger();
+
+    private volatile String mBody = "";
+    private volatile int mCode = 200;
+    private volatile boolean mGzip = true;
+    private volatile String mETag;
+    private volatile Map<String, String> mLastRequestHeaders = new HashMap<String, String>();
+
+    public StubForecastServer() throws IOException {
+        mServerSocket = new ServerSocket(0, 0, InetAddress.getByName("127.0.0.1"));
+        mAcceptThread = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                acceptConnections();
+            }
+        }, "StubForecastServer");
+        mAcceptThread.start();
+    }
+
+    public void setResponse(int code, String body) {
+        mCode = code;
+        mBody = body;
+    }
+
+    public void setGzip(boolean gzip) {
+        mGzip = gzip;
+    }
+
+    /**
+     * Sends {@code eTag} with every response and answers 304 to requests that present it.
+     */
+    public void setETag(String eTag) {
+        mETag = eTag;
+    }
+
+    public int getConnectionCount() {
+        return mConnectionCount.get();
+    }
+
+    public int getRequestCount() {
+        return mRequestCount.get();
+    }
+
+    /**
+     * @return the headers of the last request, with lower-case names
+     */
+    public Map<String, String> getLastRequestHeaders() {
+        return mLastRequestHeaders;
+    }
+
+    public URL getUrl(String path) throws IOException {
+        return new URL("http", "127.0.0.1", mServerSocket.getLocalPort(), path);
+    }
+
+    public ForecastTransport transport() {
+        final HttpForecastTransport http = new HttpForecastTransport();
+        return new ForecastTransport() {
+            @Override
+            public Response get(URL url, Map<String, String> requestHeaders) throws IOException {
+                return http.get(getUrl(url.getFile()), requestHeaders);
+            }
+        };
+    }
+
+    public void shutdown() throws IOException {
+        mServerSocket.close();
+        try {
+            mAcceptThread.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void acceptConnections() {
+        while (!mServerSocket.isClosed()) {
+            final Socket socket;
+            try {
+                socket = mServerSocket.accept();
+            } catch (IOException e) {
+                return;
+            }
+            mConnectionCount.incrementAndGet();
+            new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    serve(socket);
+                }
+            }, "StubForecastServer connection").start();
+        }
+    }
+
+    private void serve(Socket socket) {
+        try {
+            InputStream in = socket.getInputStream();
+            OutputStream out = socket.getOutputStream();
+            // Keep answering requests on this socket until the client hangs up.
+            while (true) {
+                String requestLine = readLine(in);
+                if (requestLine == null || requestLine.length() == 0) {
+                    break;
+                }
+                Map<String, String> headers = new HashMap<String, String>();
+                String line;
+                while ((line = readLine(in)) != null && line.length() > 0) {
+                    int colon = line.indexOf(':');
+                    if (colon > 0) {
+                        headers.put(line.substring(0, colon).trim().toLowerCase(Locale.US),
+                                line.substring(colon + 1).trim());
+                    }
+                }
+                mLastRequestHeaders = headers;
+                mRequestCount.incrementAndGet();
+                respond(out, headers);
+            }
+        } catch (IOException e) {
+            // The client went away.
+        } finally {
+            try {
+                socket.close();
+            } catch (IOException e) {
+                // Nothing left to clean up.
+            }
+        }
+    }
+
+    private void respond(OutputStream out, Map<String, String> requestHeaders)
+            throws IOException {
+        String eTag = mETag;
+        StringBuilder head = new StringBuilder();
+        byte[] body;
+        if (eTag != null && eTag.equals(requestHeaders.get("if-none-match"))) {
+            head.append("HTTP/1.1 304 Not Modified\r\n");
+            body = new byte[0];
+        } else {
+            head.append("HTTP/1.1 ").append(mCode).append(" Stub\r\n");
+            head.append("Content-Type: application/json; charset=utf-8\r\n");
+            body = mBody.getBytes(UTF_8);
+            String acceptEncoding = requestHeaders.get("accept-encoding");
+            if (mGzip && acceptEncoding != null && acceptEncoding.contains("gzip")) {
+                ByteArrayOutputStream compressed = new ByteArrayOutputStream();
+                GZIPOutputStream gzip = new GZIPOutputStream(compressed);
+                gzip.write(body);
+                gzip.close();
+                body = compressed.toByteArray();
+                head.append("Content-Encoding: gzip\r\n");
+            }
+        }
+        if (eTag != null) {
+            head.append("ETag: ").append(eTag).append("\r\n");
+        }
+        head.append("Content-Length: ").append(body.length).append("\r\n");
+        head.append("Connection: keep-alive\r\n\r\n");
+        out.write(head.toString().getBytes(UTF_8));
+        out.write(body);
+        out.flush();
+    }
+
+    private static String readLine(InputStream in) throws IOException {
+        StringBuilder line = new StringBuilder();
+        int c;
+        while ((c = in.read()) != -1) {
+            if (c == '\n') {
+                int length = line.length();
+                if (length > 0 && line.charAt(length - 1) == '\r') {
+                    line.setLength(length - 1);
+                }
+                return line.toString();
+            }
+            line.append((char) c);
+        }
+        return line.length() > 0 ? line.toString() : null;
+    }
+}
@@ -0,0 +1,237 @@
+/*
+ * Copyright (C) 2015 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.sunshine.app.sync;
+
+import android.content.ContentResolver;
+import android.content.ContentValues;
+import android.content.SyncResult;
+import android.database.Cursor;
+import android.os.Bundle;
+import android.test.AndroidTestCase;
+
+import com.example.android.sunshine.app.Utility;
+import com.example.android.sunshine.app.data.WeatherContract;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.net.HttpURLConnection;
+import java.util.Collections;
+import java.util.Map;
+
+public class TestForecastTransport extends AndroidTestCase {
+
+    static final String CITY_NAME = "S\u00e3o Paulo";
+
+    static final String FORECAST_JSON = "{\"city\":{\"id\":3448439,\"name\":\"" + CITY_NAME + "\","
+            + "\"coord\":{\"lon\":-46.636108,\"lat\":-23.547501},\"country\":\"BR\"},"
+            + "\"cod\":\"200\",\"message\":0.01,\"cnt\":2,\"list\":["
+            + "{\"dt\":1419033600,\"temp\":{\"day\":24.0,\"min\":18.5,\"max\":27.25},"
+            + "\"pressure\":929.44,\"humidity\":71,\"weather\":[{\"id\":500,\"main\":\"Rain\","
+            + "\"description\":\"light rain\",\"icon\":\"10d\"}],\"speed\":1.66,\"deg\":140},"
+            + "{\"dt\":1419120000,\"temp\":{\"day\":25.0,\"min\":19.0,\"max\":28.0},"
+            + "\"pressure\":930.1,\"humidity\":65,\"weather\":[{\"id\":800,\"main\":\"Clear\","
+            + "\"description\":\"sky is clear\",\"icon\":\"01d\"}],\"speed\":2.1,\"deg\":90}]}";
+
+    private static final Map<String, String> NO_HEADERS = Collections.emptyMap();
+
+    private StubForecastServer mServer;
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+        mServer = new StubForecastServer();
+        mServer.setResponse(HttpURLConnection.HTTP_OK, FORECAST_JSON);
+        mContext.getContentResolver().delete(WeatherContract.WeatherEntry.CONTENT_URI, null, null);
+        mContext.getContentResolver().delete(WeatherContract.LocationEntry.CONTENT_URI, null, null);
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        mServer.shutdown();
+        super.tearDown();
+    }
+
+    /*
+        The body should come back decompressed and decoded as UTF-8, whatever the device's
+        default charset is.
+     */
+    public void testCompressedBodyIsDecoded() throws IOException {
+        ForecastTransport.Response response = new HttpForecastTransport().get(
+                mServer.getUrl("/forecast"), NO_HEADERS);
+        try {
+            assertEquals(HttpURLConnection.HTTP_OK, response.getCode());
+            assertEquals("Error: The body doesn't match what the server sent",
+                    FORECAST_JSON, readFully(response.getBody()));
+        } finally {
+            response.close();
+        }
+
+        String acceptEncoding = mServer.getLastRequestHeaders().get("accept-encoding");
+        assertNotNull("Error: The request didn't ask for a compressed response", acceptEncoding);
+        assertTrue("Error: The request didn't ask for gzip", acceptEncoding.contains("gzip"));
+    }
+
+    public void testUncompressedBodyIsDecoded() throws IOException {
+        mServer.setGzip(false);
+        ForecastTransport.Response response = new HttpForecastTransport().get(
+                mServer.getUrl("/forecast"), NO_HEADERS);
+        try {
+            assertEquals(FORECAST_JSON, readFully(response.getBody()));
+        } finally {
+            response.close();
+        }
+    }
+
+    /*
+        Closing a response should leave its connection open for the next request, including a
+        response whose body nobody read.
+     */
+    public void testConnectionIsReused() throws IOException {
+        HttpForecastTransport transport = new HttpForecastTransport();
+        mServer.setETag("\"v1\"");
+
+        ForecastTransport.Response response = transport.get(mServer.getUrl("/forecast"), NO_HEADERS);
+        readFully(response.getBody());
+        response.close();
+
+        response = transport.get(mServer.getUrl("/forecast"),
+                Collections.singletonMap("If-None-Match", "\"v1\""));
+        assertEquals(HttpURLConnection.HTTP_NOT_MODIFIED, response.getCode());
+        response.close();
+
+        response = transport.get(mServer.getUrl("/forecast"), NO_HEADERS);
+        response.close();
+
+        assertEquals(3, mServer.getRequestCount());
+        assertEquals("Error: The transport opened a new connection for every request",
+                1, mServer.getConnectionCount());
+    }
+
+    public void testCharsetOf() {
+        assertEquals("UTF-8", HttpForecastTransport.charsetOf(null).name());
+        assertEquals("UTF-8", HttpForecastTransport.charsetOf("application/json").name());
+        assertEquals("ISO-8859-1",
+                HttpForecastTransport.charsetOf("application/json; charset=ISO-8859-1").name());
+        assertEquals("UTF-8",
+                HttpForecastTransport.charsetOf("application/json; charset=\"nonsense\"").name());
+    }
+
+    /*
+        Runs a whole sync against the stub server and checks that the forecast landed in the
+        provider.
+     */
+    public void testSyncAgainstStubServer() {
+        String locationSetting = Utility.getPreferredLocation(mContext);
+        SunshineSyncAdapter adapter = new SunshineSyncAdapter(mContext, false, mServer.transport());
+        adapter.onPerformSync(null, new Bundle(), WeatherContract.CONTENT_AUTHORITY, null,
+                new SyncResult());
+
+        assertEquals(1, mServer.getRequestCount());
+        Cursor cursor = mContext.getContentResolver().query(
+                WeatherContract.WeatherEntry.buildWeatherLocation(locationSetting),
+                null, null, null, null);
+        assertNotNull(cursor);
+        try {
+            assertEquals("Error: The synced forecast wasn't stored", 2, cursor.getCount());
+            cursor.moveToFirst();
+            assertEquals(CITY_NAME, cursor.getString(cursor.getColumnIndex(
+                    WeatherContract.LocationEntry.COLUMN_CITY_NAME)));
+        } finally {
+            cursor.close();
+        }
+    }
+
+    /*
+        Every stored location should be fetched, and every one of them should end up with a
+        forecast, whether or not it was in the location table before.
+     */
+    public void testSyncAllLocations() {
+        String[] storedLocations = {"London, UK", "Paris, FR"};
+        for (String locationSetting : storedLocations) {
+            ContentValues locationValues = new ContentValues();
+            locationValues.put(WeatherContract.LocationEntry.COLUMN_LOCATION_SETTING, locationSetting);
+            locationValues.put(WeatherContract.LocationEntry.COLUMN_CITY_NAME, locationSetting);
+            locationValues.put(WeatherContract.LocationEntry.COLUMN_COORD_LAT, 0.0);
+            locationValues.put(WeatherContract.LocationEntry.COLUMN_COORD_LONG, 0.0);
+            mContext.getContentResolver().insert(
+                    WeatherContract.LocationEntry.CONTENT_URI, locationValues);
+        }
+
+        Bundle extras = new Bundle();
+        extras.putBoolean(ContentResolver.SYNC_EXTRAS_MANUAL, true);
+        extras.putBoolean(SunshineSyncAdapter.SYNC_EXTRAS_ALL_LOCATIONS, true);
+        SunshineSyncAdapter adapter = new SunshineSyncAdapter(mContext, false, mServer.transport());
+        adapter.onPerformSync(null, extras, WeatherContract.CONTENT_AUTHORITY, null,
+                new SyncResult());
+
+        assertEquals("Error: Not every location was fetched", 3, mServer.getRequestCount());
+        String[] allLocations = {Utility.getPreferredLocation(mContext),
+                storedLocations[0], storedLocations[1]};
+        for (String locationSetting : allLocations) {
+            Cursor cursor = mContext.getContentResolver().query(
+                    WeatherContract.WeatherEntry.buildWeatherLocation(locationSetting),
+                    null, null, null, null);
+            assertNotNull(cursor);
+            assertEquals("Error: No forecast was stored for " + locationSetting,
+                    2, cursor.getCount());
+            cursor.close();
+        }
+    }
+
+    /*
+        Syncing every location should stop at the most recent few, however many the user has
+        typed in over time.
+     */
+    public void testSyncAllLocationsIsCapped() {
+        int storedCount = SunshineSyncAdapter.MAX_SYNCED_LOCATIONS + 2;
+        for (int i = 0; i < storedCount; i++) {
+            String locationSetting = "City " + i;
+            ContentValues locationValues = new ContentValues();
+            locationValues.put(WeatherContract.LocationEntry.COLUMN_LOCATION_SETTING, locationSetting);
+            locationValues.put(WeatherContract.LocationEntry.COLUMN_CITY_NAME, locationSetting);
+            locationValues.put(WeatherContract.LocationEntry.COLUMN_COORD_LAT, 0.0);
+            locationValues.put(WeatherContract.LocationEntry.COLUMN_COORD_LONG, 0.0);
+            mContext.getContentResolver().insert(
+                    WeatherContract.LocationEntry.CONTENT_URI, locationValues);
+        }
+
+        Bundle extras = new Bundle();
+        extras.putBoolean(ContentResolver.SYNC_EXTRAS_MANUAL, true);
+        extras.putBoolean(SunshineSyncAdapter.SYNC_EXTRAS_ALL_LOCATIONS, true);
+        SunshineSyncAdapter adapter = new SunshineSyncAdapter(mContext, false, mServer.transport());
+        adapter.onPerformSync(null, extras, WeatherContract.CONTENT_AUTHORITY, null,
+                new SyncResult());
+
+        assertEquals("Error: The number of locations synced wasn't capped",
+                SunshineSyncAdapter.MAX_SYNCED_LOCATIONS, mServer.getRequestCount());
+        Cursor cursor = mContext.getContentResolver().query(
+                WeatherContract.WeatherEntry.buildWeatherLocation("City 0"),
+                null, null, null, null);
+        assertNotNull(cursor);
+        assertEquals("Error: The oldest location was synced", 0, cursor.getCount());
+        cursor.close();
+    }
+
+    private static String readFully(Reader reader) throws IOException {
+        StringBuilder builder = new StringBuilder();
+        char[] buffer = new char[1024];
+        int read;
+        while ((read = reader.read(buffer)) != -1) {
+            builder.append(buffer, 0, read);
+        }
+        return builder.toString();
+    }
+}
@@ -0,0 +1,100 @@
+/*
+ * Copyright (C) 2015 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.sunshine.app.widget;
+
+import android.content.BroadcastReceiver;
+import android.content.Context;
+import android.content.Intent;
+import android.content.IntentFilter;
+import android.test.AndroidTestCase;
+
+import com.example.android.sunshine.app.sync.SunshineSyncAdapter;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class TestWidgetUpdateScheduler extends AndroidTestCase {
+
+    // Real widget ids start at 1, so these can't clash with any the device has.
+    private static final int[] WIDGET_IDS = { -2, -3 };
+
+    // Long enough for the scheduled alarm, and for a second one if there were going to be one.
+    private static final long BROADCAST_TIMEOUT_SECONDS = 10;
+    private static final long QUIET_MILLIS = 3000;
+
+    @Override
+    protected void tearDown() throws Exception {
+        WidgetUpdateScheduler.forget(WIDGET_IDS);
+        super.tearDown();
+    }
+
+    /*
+        A widget should only be updated when its content is different from what it was last
+        sent, and each widget keeps track of its own content.
+     */
+    public void testSkipsUnchangedContent() {
+        assertTrue("Error: A widget we never sent anything to wasn't updated",
+                WidgetUpdateScheduler.hasChanged(WIDGET_IDS[0], 42));
+        assertFalse("Error: A widget was updated with the content it already had",
+                WidgetUpdateScheduler.hasChanged(WIDGET_IDS[0], 42));
+        assertTrue("Error: Another widget was treated as already showing the content",
+                WidgetUpdateScheduler.hasChanged(WIDGET_IDS[1], 42));
+        assertTrue("Error: A widget wasn't updated when its content changed",
+                WidgetUpdateScheduler.hasChanged(WIDGET_IDS[0], 43));
+    }
+
+    /*
+        Once the host asks for a redraw, the next update has to go through even if the content
+        is the same.
+     */
+    public void testForgottenWidgetsAreUpdated() {
+        WidgetUpdateScheduler.hasChanged(WIDGET_IDS[0], 42);
+        WidgetUpdateScheduler.forget(new int[] { WIDGET_IDS[0] });
+        assertTrue("Error: A forgotten widget wasn't updated",
+                WidgetUpdateScheduler.hasChanged(WIDGET_IDS[0], 42));
+    }
+
+    /*
+        A burst of updates should reach the widgets as a single broadcast.
+     */
+    public void testBurstIsOneBroadcast() throws InterruptedException {
+        final AtomicInteger broadcasts = new AtomicInteger();
+        final CountDownLatch received = new CountDownLatch(1);
+        BroadcastReceiver receiver = new BroadcastReceiver() {
+            @Override
+            public void onReceive(Context context, Intent intent) {
+                broadcasts.incrementAndGet();
+                received.countDown();
+            }
+        };
+        Context context = getContext();
+        context.registerReceiver(receiver,
+                new IntentFilter(SunshineSyncAdapter.ACTION_DATA_UPDATED));
+        try {
+            for (int i = 0; i < 5; i++) {
+                WidgetUpdateScheduler.scheduleUpdate(context);
+            }
+            assertTrue("Error: The scheduled update was never broadcast",
+                    received.await(BROADCAST_TIMEOUT_SECONDS, TimeUnit.SECONDS));
+            Thread.sleep(QUIET_MILLIS);
+            assertEquals("Error: A burst of updates wasn't broadcast exactly once",
+                    1, broadcasts.get());
+        } finally {
+            context.unregisterReceiver(receiver);
+        }
+    }
+}
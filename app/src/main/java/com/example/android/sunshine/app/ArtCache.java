@@ -0,0 +1,224 @@
+/*
+ * Copyright (C) 2015 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.sunshine.app;
+
+import android.annotation.SuppressLint;
+import android.content.Context;
+import android.content.SharedPreferences;
+import android.content.res.Resources;
+import android.graphics.Bitmap;
+import android.os.Build;
+import android.support.v4.util.LruCache;
+import android.util.Log;
+
+import com.bumptech.glide.Glide;
+import com.bumptech.glide.load.engine.DiskCacheStrategy;
+import com.bumptech.glide.request.FutureTarget;
+
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * The weather art from the art packs, decoded once for each size it is shown at and shared by
+ * the list, the detail view, the widgets and the notification.  There are only a handful of
+ * conditions with art, so the bitmaps for all of them fit in a small cache.  The bitmaps are set
+ * straight on views and in widget RemoteViews, so they are never handed back to Glide to be
+ * reused; once evicted and no longer shown they are simply garbage collected.
+ *
+ * The sync {@link #prefetch}es the art for the forecast it just stored, which downloads it to
+ * Glide's disk cache and remembers that it did.  After that {@link ForecastLoader} can
+ * {@link #warm} the cache from disk before it delivers the list, so that the rows can set their
+ * art straight away instead of showing nothing while Glide loads it.
+ */
+public final class ArtCache {
+    private static final String LOG_TAG = ArtCache.class.getSimpleName();
+
+    // The URLs whose art has been downloaded, as keys with no particular value.
+    private static final String PREFS_NAME = "art_cache";
+
+    // Warming only reads from disk, but don't hold the list up if the disk cache lost the art.
+    private static final long WARM_TIMEOUT_MILLIS = 1000;
+
+    private static final LruCache<String, Bitmap> sBitmaps =
+            new LruCache<String, Bitmap>((int) (Runtime.getRuntime().maxMemory() / 32)) {
+        @Override
+        protected int sizeOf(String key, Bitmap bitmap) {
+            return bitmap.getRowBytes() * bitmap.getHeight();
+        }
+    };
+
+    private ArtCache() {
+    }
+
+    /**
+     * @return the size of the art in the list rows other than today's
+     */
+    public static int getListSize(Context context) {
+        return context.getResources().getDimensionPixelSize(R.dimen.list_icon);
+    }
+
+    /**
+     * @return the size of the art in today's row and in the detail view
+     */
+    public static int getTodaySize(Context context) {
+        return context.getResources().getDimensionPixelSize(R.dimen.today_icon);
+    }
+
+    /**
+     * @return the size of the notification's large icon
+     */
+    public static int getNotificationSize(Context context) {
+        Resources resources = context.getResources();
+        // On Honeycomb and higher devices, we can retrieve the size of the large icon
+        // Prior to that, we use a fixed size
+        @SuppressLint("InlinedApi")
+        int size = Build.VERSION.SDK_INT >= Build.VERSION_CODES.HONEYCOMB
+                ? resources.getDimensionPixelSize(android.R.dimen.notification_large_icon_width)
+                : resources.getDimensionPixelSize(R.dimen.notification_large_icon_default);
+        return size;
+    }
+
+    private static String getKey(String url, int size) {
+        return url + '#' + size;
+    }
+
+    /**
+     * @return the art at {@code url}, decoded to fit in {@code size} pixels, or null if it
+     * hasn't been decoded yet.  Never blocks.
+     */
+    public static Bitmap get(String url, int size) {
+        return sBitmaps.get(getKey(url, size));
+    }
+
+    /**
+     * Downloads the art at {@code url} if needed and decodes it to fit in {@code size} pixels.
+     * Must not be called on the main thread.
+     *
+     * @return the art, or null if it couldn't be loaded
+     */
+    public static Bitmap load(Context context, String url, int size) {
+        try {
+            return load(context, url, size, 0);
+        } catch (TimeoutException e) {
+            // Can't happen without a timeout.
+            return null;
+        }
+    }
+
+    private static Bitmap load(Context context, String url, int size, long timeoutMillis)
+            throws TimeoutException {
+        String key = getKey(url, size);
+        Bitmap bitmap = sBitmaps.get(key);
+        if (bitmap != null) {
+            return bitmap;
+        }
+        // The request is never cleared once it has a bitmap, since clearing would let Glide pool
+        // or recycle it while a view still shows it; the bitmap is garbage collected instead.
+        // The source stays on disk, so each size is decoded without downloading again.
+        FutureTarget<Bitmap> request = Glide.with(context.getApplicationContext())
+                .load(url)
+                .asBitmap()
+                .diskCacheStrategy(DiskCacheStrategy.ALL)
+                .fitCenter()
+                .into(size, size);
+        try {
+            bitmap = timeoutMillis > 0
+                    ? request.get(timeoutMillis, TimeUnit.MILLISECONDS) : request.get();
+        } catch (InterruptedException | ExecutionException e) {
+            Log.e(LOG_TAG, "Error retrieving art from " + url, e);
+            Glide.clear(request);
+            return null;
+        } catch (TimeoutException e) {
+            // Nobody has the bitmap yet, so the request can go.
+            Glide.clear(request);
+            throw e;
+        }
+        sBitmaps.put(key, bitmap);
+        return bitmap;
+    }
+
+    /**
+     * Loads the art for {@code weatherIds} at {@code size}, so that {@link #get} finds it
+     * afterwards.  Must not be called on the main thread.
+     */
+    public static void loadAll(Context context, Collection<Integer> weatherIds, int size) {
+        for (String url : getArtUrls(context, weatherIds)) {
+            load(context, url, size);
+        }
+    }
+
+    /**
+     * Downloads the art for {@code weatherIds} and decodes it at every size it is shown at,
+     * unless the user has picked the local graphics.  Called by the sync once it has stored a
+     * forecast.
+     */
+    public static void prefetch(Context context, Collection<Integer> weatherIds) {
+        if (Utility.usingLocalGraphics(context)) {
+            return;
+        }
+        int[] sizes = { getListSize(context), getTodaySize(context),
+                getNotificationSize(context) };
+        SharedPreferences.Editor stored = getStoredUrls(context).edit();
+        for (String url : getArtUrls(context, weatherIds)) {
+            boolean loaded = true;
+            for (int size : sizes) {
+                loaded &= load(context, url, size) != null;
+            }
+            if (loaded) {
+                stored.putBoolean(url, true);
+            }
+        }
+        stored.apply();
+    }
+
+    /**
+     * Decodes the art at {@code urls} at {@code size}, if it has been downloaded before.  Art
+     * that hasn't is left for Glide to load when it is shown.  Must not be called on the main
+     * thread.
+     */
+    static void warm(Context context, Collection<String> urls, int size) {
+        SharedPreferences stored = getStoredUrls(context);
+        for (String url : urls) {
+            if (sBitmaps.get(getKey(url, size)) != null || !stored.contains(url)) {
+                continue;
+            }
+            try {
+                load(context, url, size, WARM_TIMEOUT_MILLIS);
+            } catch (TimeoutException e) {
+                Log.d(LOG_TAG, "Art took too long to load from disk: " + url);
+            }
+        }
+    }
+
+    private static Set<String> getArtUrls(Context context, Collection<Integer> weatherIds) {
+        Set<String> urls = new HashSet<String>();
+        for (int weatherId : weatherIds) {
+            String url = Utility.getArtUrlForWeatherCondition(context, weatherId);
+            if (url != null) {
+                urls.add(url);
+            }
+        }
+        return urls;
+    }
+
+    private static SharedPreferences getStoredUrls(Context context) {
+        return context.getSharedPreferences(PREFS_NAME, Context.MODE_PRIVATE);
+    }
+}
@@ -17,6 +17,7 @@ package com.example.android.sunshine.app;
 
 import android.content.Intent;
 import android.database.Cursor;
+import android.graphics.Bitmap;
 import android.net.Uri;
 import android.os.Bundle;
 import android.support.v4.app.Fragment;
@@ -38,6 +39,7 @@ import android.widget.ImageView;
 import android.widget.TextView;
 
 import com.bumptech.glide.Glide;
+import com.bumptech.glide.load.engine.DiskCacheStrategy;
 import com.example.android.sunshine.app.data.WeatherContract;
 import com.example.android.sunshine.app.data.WeatherContract.WeatherEntry;
 
@@ -203,12 +205,21 @@ public class DetailFragment extends Fragment implements LoaderManager.LoaderCall
             if ( Utility.usingLocalGraphics(getActivity()) ) {
                 mIconView.setImageResource(Utility.getArtResourceForWeatherCondition(weatherId));
             } else {
-                // Use weather art image
-                Glide.with(this)
-                        .load(Utility.getArtUrlForWeatherCondition(getActivity(), weatherId))
-                        .error(Utility.getArtResourceForWeatherCondition(weatherId))
-                        .crossFade()
-                        .into(mIconView);
+                // Use weather art image, straight from the cache if the list already decoded it
+                String artUrl = Utility.getArtUrlForWeatherCondition(getActivity(), weatherId);
+                Bitmap art = artUrl == null
+                        ? null : ArtCache.get(artUrl, ArtCache.getTodaySize(getActivity()));
+                if (art != null) {
+                    Glide.clear(mIconView);
+                    mIconView.setImageBitmap(art);
+                } else {
+                    Glide.with(this)
+                            .load(artUrl)
+                            .diskCacheStrategy(DiskCacheStrategy.ALL)
+                            .error(Utility.getArtResourceForWeatherCondition(weatherId))
+                            .crossFade()
+                            .into(mIconView);
+                }
             }
 
             // Read date from cursor and update views for day of week and date
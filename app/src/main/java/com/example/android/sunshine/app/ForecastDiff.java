@@ -0,0 +1,138 @@
+/*
+ * Copyright (C) 2015 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.sunshine.app;
+
+import android.support.v7.widget.RecyclerView;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * The changes that turn one forecast list into the next, worked out by {@link ForecastLoader}
+ * on its background thread so that the adapter only has to tell the RecyclerView about the
+ * rows that actually changed.
+ *
+ * Both lists are sorted by date, and a row's date is its identity, so one merge-like pass over
+ * the two finds every removed, inserted and changed row.
+ */
+public final class ForecastDiff {
+    private static final int OP_REMOVE = 0;
+    private static final int OP_INSERT = 1;
+    private static final int OP_CHANGE = 2;
+
+    final List<ForecastRow> mOldRows;
+    final List<ForecastRow> mNewRows;
+
+    // Runs of operations, three ints each: the kind, the adapter position and the row count.
+    // Positions take the operations before them into account, so they apply in order.
+    private final int[] mOps;
+    private final int mOpCount;
+
+    private ForecastDiff(List<ForecastRow> oldRows, List<ForecastRow> newRows, int[] ops,
+                         int opCount) {
+        mOldRows = oldRows;
+        mNewRows = newRows;
+        mOps = ops;
+        mOpCount = opCount;
+    }
+
+    /**
+     * @param oldRows the rows the adapter is showing, or null if it isn't showing any
+     */
+    static ForecastDiff compute(List<ForecastRow> oldRows, List<ForecastRow> newRows) {
+        List<ForecastRow> from = oldRows == null ? Collections.<ForecastRow>emptyList() : oldRows;
+        // Every row produces at most one run.
+        int[] ops = new int[3 * (from.size() + newRows.size())];
+        int opCount = 0;
+
+        int oldIndex = 0;
+        int newIndex = 0;
+        int position = 0;
+        while (oldIndex < from.size() || newIndex < newRows.size()) {
+            ForecastRow oldRow = oldIndex < from.size() ? from.get(oldIndex) : null;
+            ForecastRow newRow = newIndex < newRows.size() ? newRows.get(newIndex) : null;
+            int op;
+            if (oldRow != null && newRow != null && oldRow.mDate == newRow.mDate) {
+                oldIndex++;
+                newIndex++;
+                if (oldRow.hasSameContent(newRow)) {
+                    position++;
+                    continue;
+                }
+                op = OP_CHANGE;
+            } else if (newRow == null || (oldRow != null && oldRow.mDate < newRow.mDate)) {
+                oldIndex++;
+                op = OP_REMOVE;
+            } else {
+                newIndex++;
+                op = OP_INSERT;
+            }
+
+            int previous = 3 * (opCount - 1);
+            if (opCount > 0 && extendsRun(ops, previous, op, position)) {
+                ops[previous + 2]++;
+            } else {
+                ops[3 * opCount] = op;
+                ops[3 * opCount + 1] = position;
+                ops[3 * opCount + 2] = 1;
+                opCount++;
+            }
+            if (op != OP_REMOVE) {
+                position++;
+            }
+        }
+        return new ForecastDiff(oldRows, newRows, Arrays.copyOf(ops, 3 * opCount), opCount);
+    }
+
+    /**
+     * @return true if an operation of kind {@code op} at {@code position} continues the run
+     * that starts at {@code run}
+     */
+    private static boolean extendsRun(int[] ops, int run, int op, int position) {
+        if (ops[run] != op) {
+            return false;
+        }
+        // Removed rows all leave from the same position; inserted and changed ones follow on.
+        int next = op == OP_REMOVE ? ops[run + 1] : ops[run + 1] + ops[run + 2];
+        return position == next;
+    }
+
+    public boolean isEmpty() {
+        return mOpCount == 0;
+    }
+
+    /**
+     * Tells {@code adapter} about every change, in order.  The adapter must already hold the
+     * new rows.
+     */
+    void dispatchUpdatesTo(RecyclerView.Adapter adapter) {
+        for (int i = 0; i < mOpCount; i++) {
+            int position = mOps[3 * i + 1];
+            int count = mOps[3 * i + 2];
+            switch (mOps[3 * i]) {
+                case OP_REMOVE:
+                    adapter.notifyItemRangeRemoved(position, count);
+                    break;
+                case OP_INSERT:
+                    adapter.notifyItemRangeInserted(position, count);
+                    break;
+                default:
+                    adapter.notifyItemRangeChanged(position, count);
+            }
+        }
+    }
+}
@@ -0,0 +1,126 @@
+/*
+ * Copyright (C) 2015 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.sunshine.app;
+
+import android.content.Context;
+import android.database.Cursor;
+import android.net.Uri;
+import android.support.v4.content.AsyncTaskLoader;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Loads the forecast list as {@link ForecastRow}s.  The query, all of the formatting and the
+ * diff against the previous list happen on the loader's background thread, and the list is
+ * reloaded whenever the provider reports a change under the URI, the same as a CursorLoader
+ * would.
+ */
+public class ForecastLoader extends AsyncTaskLoader<ForecastDiff> {
+    private final ForceLoadContentObserver mObserver = new ForceLoadContentObserver();
+    private final Uri mUri;
+    private final String mSortOrder;
+    // Written on the main thread, read by loadInBackground to diff against.
+    private volatile ForecastDiff mResult;
+    private boolean mObserving;
+
+    public ForecastLoader(Context context, Uri uri, String sortOrder) {
+        super(context);
+        mUri = uri;
+        mSortOrder = sortOrder;
+    }
+
+    @Override
+    public ForecastDiff loadInBackground() {
+        ForecastDiff previous = mResult;
+        return ForecastDiff.compute(previous == null ? null : previous.mNewRows, loadRows());
+    }
+
+    private List<ForecastRow> loadRows() {
+        Context context = getContext();
+        Cursor cursor = context.getContentResolver().query(mUri,
+                ForecastFragment.FORECAST_COLUMNS, null, null, mSortOrder);
+        if (cursor == null) {
+            return Collections.emptyList();
+        }
+        try {
+            boolean usingLocalGraphics = Utility.usingLocalGraphics(context);
+            List<ForecastRow> rows = new ArrayList<ForecastRow>(cursor.getCount());
+            Set<String> artUrls = new LinkedHashSet<String>();
+            while (cursor.moveToNext()) {
+                ForecastRow row = ForecastRow.fromCursor(context, cursor, usingLocalGraphics);
+                rows.add(row);
+                if (row.mArtUrl != null) {
+                    artUrls.add(row.mArtUrl);
+                }
+            }
+            // Decode the art the sync already downloaded, so the rows don't bind without it.
+            // Any day can end up in the detail pane, so every one is warmed at today's size
+            // too; there are only a handful of distinct images.
+            if (!artUrls.isEmpty()) {
+                ArtCache.warm(context, artUrls, ArtCache.getListSize(context));
+                ArtCache.warm(context, artUrls, ArtCache.getTodaySize(context));
+            }
+            return Collections.unmodifiableList(rows);
+        } finally {
+            cursor.close();
+        }
+    }
+
+    @Override
+    public void deliverResult(ForecastDiff result) {
+        if (isReset()) {
+            return;
+        }
+        mResult = result;
+        if (isStarted()) {
+            super.deliverResult(result);
+        }
+    }
+
+    @Override
+    protected void onStartLoading() {
+        if (!mObserving) {
+            getContext().getContentResolver().registerContentObserver(mUri, true, mObserver);
+            mObserving = true;
+        }
+        if (mResult != null) {
+            deliverResult(mResult);
+        }
+        if (takeContentChanged() || mResult == null) {
+            forceLoad();
+        }
+    }
+
+    @Override
+    protected void onStopLoading() {
+        cancelLoad();
+    }
+
+    @Override
+    protected void onReset() {
+        super.onReset();
+        onStopLoading();
+        if (mObserving) {
+            getContext().getContentResolver().unregisterContentObserver(mObserver);
+            mObserving = false;
+        }
+        mResult = null;
+    }
+}
@@ -0,0 +1,89 @@
+/*
+ * Copyright (C) 2015 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.sunshine.app;
+
+import android.content.Context;
+import android.database.Cursor;
+
+/**
+ * One day of the forecast list, with everything the list shows already formatted.  Rows are
+ * built by {@link ForecastLoader} off the UI thread, so binding one is only a matter of handing
+ * its fields to the views.
+ *
+ * Whether a row is shown with the "today" layout depends on its position, so both the short and
+ * the long form of the date and both the icon and the art are kept.
+ */
+public final class ForecastRow {
+    public final long mDate;
+    public final int mWeatherId;
+    public final String mDateText;
+    public final String mLongDateText;
+    public final String mDescription;
+    public final String mDescriptionA11y;
+    public final String mHighText;
+    public final String mHighA11y;
+    public final String mLowText;
+    public final String mLowA11y;
+    public final int mIconResourceId;
+    public final int mArtResourceId;
+    // null when the user has picked the local graphics
+    public final String mArtUrl;
+    public final String mCoordLat;
+    public final String mCoordLong;
+
+    private ForecastRow(Context context, Cursor cursor, boolean usingLocalGraphics) {
+        mDate = cursor.getLong(ForecastFragment.COL_WEATHER_DATE);
+        mWeatherId = cursor.getInt(ForecastFragment.COL_WEATHER_CONDITION_ID);
+        mDateText = Utility.getFriendlyDayString(context, mDate, false);
+        mLongDateText = Utility.getFriendlyDayString(context, mDate, true);
+        mDescription = Utility.getStringForWeatherCondition(context, mWeatherId);
+        mDescriptionA11y = context.getString(R.string.a11y_forecast, mDescription);
+        mHighText = Utility.formatTemperature(context,
+                cursor.getDouble(ForecastFragment.COL_WEATHER_MAX_TEMP));
+        mHighA11y = context.getString(R.string.a11y_high_temp, mHighText);
+        mLowText = Utility.formatTemperature(context,
+                cursor.getDouble(ForecastFragment.COL_WEATHER_MIN_TEMP));
+        mLowA11y = context.getString(R.string.a11y_low_temp, mLowText);
+        mIconResourceId = Utility.getIconResourceForWeatherCondition(mWeatherId);
+        mArtResourceId = Utility.getArtResourceForWeatherCondition(mWeatherId);
+        mArtUrl = usingLocalGraphics
+                ? null : Utility.getArtUrlForWeatherCondition(context, mWeatherId);
+        mCoordLat = cursor.getString(ForecastFragment.COL_COORD_LAT);
+        mCoordLong = cursor.getString(ForecastFragment.COL_COORD_LONG);
+    }
+
+    /**
+     * @return true if {@code other} would look exactly like this row in the list
+     */
+    boolean hasSameContent(ForecastRow other) {
+        return mDate == other.mDate
+                && mWeatherId == other.mWeatherId
+                && mDateText.equals(other.mDateText)
+                && mLongDateText.equals(other.mLongDateText)
+                && mDescription.equals(other.mDescription)
+                && mHighText.equals(other.mHighText)
+                && mLowText.equals(other.mLowText)
+                && (mArtUrl == null ? other.mArtUrl == null : mArtUrl.equals(other.mArtUrl));
+    }
+
+    /**
+     * Formats the row the cursor is on.  The cursor must have the columns of
+     * {@link ForecastFragment#FORECAST_COLUMNS}.
+     */
+    static ForecastRow fromCursor(Context context, Cursor cursor, boolean usingLocalGraphics) {
+        return new ForecastRow(context, cursor, usingLocalGraphics);
+    }
+}
@@ -28,8 +28,9 @@ import android.widget.AbsListView;
 import android.widget.Checkable;
 
 /**
- * The ItemChoiceManager class keeps track of which positions have been selected.  Note that it
- * doesn't take advantage of new adapter features to track changes in the underlying data.
+ * The ItemChoiceManager class keeps track of which positions have been selected.  It observes
+ * the adapter, so selections move with their rows when rows are inserted or removed, and are
+ * found again by ID after a full data set change if the adapter has stable IDs.
  */
 public class ItemChoiceManager {
     private final String LOG_TAG = MainActivity.class.getSimpleName();
@@ -44,6 +45,16 @@ public class ItemChoiceManager {
             if (mAdapter != null && mAdapter.hasStableIds())
                 confirmCheckedPositionsById(mAdapter.getItemCount());
         }
+
+        @Override
+        public void onItemRangeInserted(int positionStart, int itemCount) {
+            offsetCheckedPositions(positionStart, itemCount, false);
+        }
+
+        @Override
+        public void onItemRangeRemoved(int positionStart, int itemCount) {
+            offsetCheckedPositions(positionStart, itemCount, true);
+        }
     };
 
     private ItemChoiceManager() {
@@ -53,6 +64,7 @@ public class ItemChoiceManager {
 
     public ItemChoiceManager(RecyclerView.Adapter adapter) {
         mAdapter = adapter;
+        mAdapter.registerAdapterDataObserver(mAdapterDataObserver);
     }
 
     /**
@@ -162,7 +174,8 @@ public class ItemChoiceManager {
             final long id = mCheckedIdStates.keyAt(checkedIndex);
             final int lastPos = mCheckedIdStates.valueAt(checkedIndex);
 
-            final long lastPosId = mAdapter.getItemId(lastPos);
+            final long lastPosId = lastPos < oldItemCount
+                    ? mAdapter.getItemId(lastPos) : RecyclerView.NO_ID;
             if (id != lastPosId) {
                 // Look around to see if the ID is nearby. If not, uncheck it.
                 final int start = Math.max(0, lastPos - CHECK_POSITION_SEARCH_DISTANCE);
@@ -188,6 +201,44 @@ public class ItemChoiceManager {
         }
     }
 
+    /**
+     * Moves the checked positions after a range of rows was inserted or removed.  Rows that
+     * were removed are no longer checked.
+     */
+    void offsetCheckedPositions(int positionStart, int itemCount, boolean removed) {
+        SparseBooleanArray checkStates = new SparseBooleanArray();
+        for (int i = 0; i < mCheckStates.size(); i++) {
+            int position = offsetPosition(mCheckStates.keyAt(i), positionStart, itemCount, removed);
+            if (position != RecyclerView.NO_POSITION) {
+                checkStates.put(position, mCheckStates.valueAt(i));
+            }
+        }
+        mCheckStates = checkStates;
+
+        for (int i = mCheckedIdStates.size() - 1; i >= 0; i--) {
+            int position = offsetPosition(mCheckedIdStates.valueAt(i), positionStart, itemCount,
+                    removed);
+            if (position == RecyclerView.NO_POSITION) {
+                mCheckedIdStates.removeAt(i);
+            } else {
+                mCheckedIdStates.setValueAt(i, position);
+            }
+        }
+    }
+
+    private static int offsetPosition(int position, int positionStart, int itemCount,
+                                      boolean removed) {
+        if (position < positionStart) {
+            return position;
+        } else if (!removed) {
+            return position + itemCount;
+        } else if (position < positionStart + itemCount) {
+            return RecyclerView.NO_POSITION;
+        } else {
+            return position - itemCount;
+        }
+    }
+
     public void onBindViewHolder(RecyclerView.ViewHolder vh, int position) {
         boolean checked = isItemChecked(position);
         if (vh.itemView instanceof Checkable) {
@@ -38,7 +38,7 @@ import android.view.View;
 import com.example.android.sunshine.app.data.WeatherContract;
 import com.example.android.sunshine.app.sync.SunshineSyncAdapter;
 import com.example.android.sunshine.app.wearable.ListenerService;
-import com.example.android.sunshine.app.wearable.SendMessageWearable;
+import com.example.android.sunshine.app.wearable.WearableDispatcher;
 import com.google.android.gms.common.ConnectionResult;
 import com.google.android.gms.common.GooglePlayServicesUtil;
 import com.google.android.gms.common.api.GoogleApiClient;
@@ -248,7 +248,7 @@ public class MainActivity extends AppCompatActivity
          * This should not be called only when cursor loads new data
          * but for the purposes of the exercise should be enough...
          */
-        new SendMessageWearable(getApplicationContext(), mGoogleApiClient).execute();
+        WearableDispatcher.getInstance(this).requestUpdate();
     }
 
     /****** end interface *******/
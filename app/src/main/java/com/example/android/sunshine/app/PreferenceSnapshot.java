@@ -0,0 +1,145 @@
+/*
+ * Copyright (C) 2015 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.sunshine.app;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+import android.preference.PreferenceManager;
+
+import com.example.android.sunshine.app.sync.SunshineSyncAdapter;
+
+/**
+ * The settings that the list, the widgets and the sync read all the time, read once from the
+ * default SharedPreferences and kept as an immutable snapshot.  A new snapshot is published
+ * whenever a preference changes, so readers only pay for a volatile read.
+ *
+ * SharedPreferences tells its listeners about a change in no particular order, so a listener
+ * elsewhere in the app may run before the snapshot has been refreshed.  The location status is
+ * read from such a listener, which is why writes to it go through {@link #putLocationStatus}
+ * and are published before anyone is told about them.
+ */
+public final class PreferenceSnapshot {
+
+    private static final Object sLock = new Object();
+    private static volatile PreferenceSnapshot sCurrent;
+    // SharedPreferences only keeps weak references to its listeners.
+    private static SharedPreferences.OnSharedPreferenceChangeListener sListener;
+
+    private final String mLocation;
+    private final boolean mMetric;
+    private final String mArtPack;
+    private final boolean mUsingLocalGraphics;
+    private final int mLocationStatus;
+
+    private PreferenceSnapshot(Context context, SharedPreferences prefs) {
+        mLocation = prefs.getString(context.getString(R.string.pref_location_key),
+                context.getString(R.string.pref_location_default));
+        String metric = context.getString(R.string.pref_units_metric);
+        mMetric = prefs.getString(context.getString(R.string.pref_units_key), metric)
+                .equals(metric);
+        String sunshineArtPack = context.getString(R.string.pref_art_pack_sunshine);
+        mArtPack = prefs.getString(context.getString(R.string.pref_art_pack_key),
+                sunshineArtPack);
+        mUsingLocalGraphics = mArtPack.equals(sunshineArtPack);
+        mLocationStatus = prefs.getInt(context.getString(R.string.pref_location_status_key),
+                SunshineSyncAdapter.LOCATION_STATUS_UNKNOWN);
+    }
+
+    private PreferenceSnapshot(PreferenceSnapshot snapshot, int locationStatus) {
+        mLocation = snapshot.mLocation;
+        mMetric = snapshot.mMetric;
+        mArtPack = snapshot.mArtPack;
+        mUsingLocalGraphics = snapshot.mUsingLocalGraphics;
+        mLocationStatus = locationStatus;
+    }
+
+    public String getLocation() {
+        return mLocation;
+    }
+
+    public boolean isMetric() {
+        return mMetric;
+    }
+
+    /**
+     * @return the art pack's URL format, which takes the name of the art as its only argument
+     */
+    public String getArtPack() {
+        return mArtPack;
+    }
+
+    public boolean usingLocalGraphics() {
+        return mUsingLocalGraphics;
+    }
+
+    @SunshineSyncAdapter.LocationStatus
+    @SuppressWarnings("ResourceType")
+    public int getLocationStatus() {
+        return mLocationStatus;
+    }
+
+    /**
+     * @return the current settings, loading them the first time around
+     */
+    public static PreferenceSnapshot get(Context context) {
+        PreferenceSnapshot snapshot = sCurrent;
+        if (snapshot != null) {
+            return snapshot;
+        }
+        synchronized (sLock) {
+            if (sCurrent == null) {
+                final Context appContext = context.getApplicationContext();
+                SharedPreferences prefs = PreferenceManager.getDefaultSharedPreferences(appContext);
+                sListener = new SharedPreferences.OnSharedPreferenceChangeListener() {
+                    @Override
+                    public void onSharedPreferenceChanged(SharedPreferences sharedPreferences,
+                                                          String key) {
+                        synchronized (sLock) {
+                            sCurrent = new PreferenceSnapshot(appContext, sharedPreferences);
+                        }
+                    }
+                };
+                prefs.registerOnSharedPreferenceChangeListener(sListener);
+                sCurrent = new PreferenceSnapshot(appContext, prefs);
+            }
+            return sCurrent;
+        }
+    }
+
+    /**
+     * Writes the location status and publishes it in the same step.
+     *
+     * @param commit true to write it to disk before returning, which must not be done on the
+     *               UI thread
+     */
+    public static void putLocationStatus(Context context,
+                                         @SunshineSyncAdapter.LocationStatus int locationStatus,
+                                         boolean commit) {
+        // Makes sure there is a snapshot to publish the status in.
+        get(context);
+        synchronized (sLock) {
+            SharedPreferences.Editor spe =
+                    PreferenceManager.getDefaultSharedPreferences(context).edit();
+            spe.putInt(context.getString(R.string.pref_location_status_key), locationStatus);
+            sCurrent = new PreferenceSnapshot(sCurrent, locationStatus);
+            if (commit) {
+                spe.commit();
+            } else {
+                spe.apply();
+            }
+        }
+    }
+}
@@ -0,0 +1,161 @@
+/*
+ * Copyright (C) 2015 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.sunshine.app.data;
+
+import android.content.Context;
+import android.database.Cursor;
+import android.net.Uri;
+
+import com.example.android.sunshine.app.data.WeatherContract.WeatherEntry;
+
+/**
+ * Today's weather at a location: the first day of its stored forecast from today onwards.
+ *
+ * The widget, Muzei, the notification and the wearable all show this after every sync.  Rather
+ * than each of them querying the provider for it, the sync loads it once after its commit and
+ * publishes it here, and they read the published copy.  The copy is immutable and published
+ * through a volatile field, so reading it takes no lock.  The provider throws it away on every
+ * write, and the next read after that (or the first one in a new process) goes back to the
+ * provider.
+ */
+public final class CurrentConditions {
+
+    private static final String[] CONDITIONS_COLUMNS = {
+            WeatherEntry.COLUMN_DATE,
+            WeatherEntry.COLUMN_WEATHER_ID,
+            WeatherEntry.COLUMN_SHORT_DESC,
+            WeatherEntry.COLUMN_MAX_TEMP,
+            WeatherEntry.COLUMN_MIN_TEMP
+    };
+    // these indices must match the projection
+    private static final int INDEX_DATE = 0;
+    private static final int INDEX_WEATHER_ID = 1;
+    private static final int INDEX_SHORT_DESC = 2;
+    private static final int INDEX_MAX_TEMP = 3;
+    private static final int INDEX_MIN_TEMP = 4;
+
+    private static final Object sLock = new Object();
+    private static volatile CurrentConditions sCurrent;
+    // Bumped by every invalidate, so that a load which raced with a write isn't published.
+    private static int sGeneration;
+
+    private final String mLocationSetting;
+    private final long mDate;
+    private final int mWeatherId;
+    private final String mShortDesc;
+    private final double mMaxTemp;
+    private final double mMinTemp;
+
+    private CurrentConditions(String locationSetting, long date, int weatherId, String shortDesc,
+                              double maxTemp, double minTemp) {
+        mLocationSetting = locationSetting;
+        mDate = date;
+        mWeatherId = weatherId;
+        mShortDesc = shortDesc;
+        mMaxTemp = maxTemp;
+        mMinTemp = minTemp;
+    }
+
+    /**
+     * @return today's weather at the location, or null if none is stored.  This only touches
+     * the provider if nothing current has been published for the location.
+     */
+    public static CurrentConditions get(Context context, String locationSetting) {
+        CurrentConditions current = sCurrent;
+        if (current != null && current.mLocationSetting.equals(locationSetting)
+                && current.mDate >= WeatherContract.normalizeDate(System.currentTimeMillis())) {
+            return current;
+        }
+        return load(context, locationSetting);
+    }
+
+    /**
+     * Reads today's weather at the location from the provider and publishes it.
+     *
+     * @return the conditions read, or null if none are stored
+     */
+    public static CurrentConditions load(Context context, String locationSetting) {
+        int generation;
+        synchronized (sLock) {
+            generation = sGeneration;
+        }
+
+        Uri weatherForLocationUri = WeatherEntry.buildWeatherLocationWithStartDate(
+                locationSetting, System.currentTimeMillis());
+        Cursor data = context.getContentResolver().query(weatherForLocationUri,
+                CONDITIONS_COLUMNS, null, null, WeatherEntry.COLUMN_DATE + " ASC");
+        if (data == null) {
+            return null;
+        }
+        CurrentConditions conditions = null;
+        try {
+            if (data.moveToFirst()) {
+                conditions = new CurrentConditions(locationSetting,
+                        data.getLong(INDEX_DATE),
+                        data.getInt(INDEX_WEATHER_ID),
+                        data.getString(INDEX_SHORT_DESC),
+                        data.getDouble(INDEX_MAX_TEMP),
+                        data.getDouble(INDEX_MIN_TEMP));
+            }
+        } finally {
+            data.close();
+        }
+
+        synchronized (sLock) {
+            if (conditions != null && generation == sGeneration) {
+                sCurrent = conditions;
+            }
+        }
+        return conditions;
+    }
+
+    /**
+     * Forgets the published conditions.  The provider calls this whenever weather is written.
+     */
+    static void invalidate() {
+        synchronized (sLock) {
+            sGeneration++;
+            sCurrent = null;
+        }
+    }
+
+    public String getLocationSetting() {
+        return mLocationSetting;
+    }
+
+    /**
+     * @return the normalized date of the day these conditions are for
+     */
+    public long getDate() {
+        return mDate;
+    }
+
+    public int getWeatherId() {
+        return mWeatherId;
+    }
+
+    public String getShortDesc() {
+        return mShortDesc;
+    }
+
+    public double getMaxTemp() {
+        return mMaxTemp;
+    }
+
+    public double getMinTemp() {
+        return mMinTemp;
+    }
+}
@@ -0,0 +1,202 @@
+/*
+ * Copyright (C) 2015 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.sunshine.app.data;
+
+import android.annotation.TargetApi;
+import android.content.ContentProviderOperation;
+import android.content.ContentResolver;
+import android.content.ContentValues;
+import android.content.OperationApplicationException;
+import android.database.Cursor;
+import android.os.Build;
+import android.os.Bundle;
+import android.os.RemoteException;
+
+import com.example.android.sunshine.app.data.WeatherContract.LocationEntry;
+import com.example.android.sunshine.app.data.WeatherContract.WeatherEntry;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Everything a sync writes, applied by the provider in one transaction with one change
+ * notification: for each location, the location row is inserted or updated and its forecast
+ * window is replaced by the new days; then every day before {@code pruneBefore} is dropped.
+ */
+public class ForecastCommit {
+
+    // Bundle keys.  Each location's bundle also holds its WeatherBatch.
+    private static final String KEY_PRUNE_BEFORE = "prune_before";
+    private static final String KEY_LOCATIONS = "locations";
+
+    final long mPruneBefore;
+    final ArrayList<Bundle> mLocations;
+
+    /**
+     * @param pruneBefore weather for dates before this is deleted from every location
+     */
+    public ForecastCommit(long pruneBefore) {
+        this(pruneBefore, new ArrayList<Bundle>());
+    }
+
+    private ForecastCommit(long pruneBefore, ArrayList<Bundle> locations) {
+        mPruneBefore = pruneBefore;
+        mLocations = locations;
+    }
+
+    /**
+     * Adds a location and its new forecast.  The location ids in {@code days} are ignored;
+     * the provider fills in the id of the location row.
+     */
+    public void addLocation(String locationSetting, String cityName, double lat, double lon,
+                            WeatherBatch days) {
+        Bundle location = days.toBundle();
+        location.putString(LocationEntry.COLUMN_LOCATION_SETTING, locationSetting);
+        location.putString(LocationEntry.COLUMN_CITY_NAME, cityName);
+        location.putDouble(LocationEntry.COLUMN_COORD_LAT, lat);
+        location.putDouble(LocationEntry.COLUMN_COORD_LONG, lon);
+        mLocations.add(location);
+    }
+
+    public boolean isEmpty() {
+        return mLocations.isEmpty();
+    }
+
+    /**
+     * Hands the commit to the provider.  Honeycomb and higher send it in a single call; older
+     * platforms can't call into a provider, so they get the same writes as one applyBatch.
+     *
+     * @return the number of weather rows written
+     */
+    public int commit(ContentResolver resolver)
+            throws RemoteException, OperationApplicationException {
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.HONEYCOMB) {
+            return commitByCall(resolver);
+        } else {
+            return commitByOperations(resolver);
+        }
+    }
+
+    @TargetApi(Build.VERSION_CODES.HONEYCOMB)
+    private int commitByCall(ContentResolver resolver) {
+        Bundle result = resolver.call(WeatherContract.BASE_CONTENT_URI,
+                WeatherContract.METHOD_COMMIT_FORECAST, null, toBundle());
+        return result == null ? 0 : result.getInt(WeatherContract.EXTRA_ROW_COUNT);
+    }
+
+    private int commitByOperations(ContentResolver resolver)
+            throws RemoteException, OperationApplicationException {
+        Map<String, Long> locationIds = getLocationIds(resolver);
+        ArrayList<ContentProviderOperation> operations = new ArrayList<ContentProviderOperation>();
+        int inserted = 0;
+
+        for (Bundle location : mLocations) {
+            String locationSetting = location.getString(LocationEntry.COLUMN_LOCATION_SETTING);
+            Long locationId = locationIds.get(locationSetting);
+            int locationInsert = -1;
+            if (locationId == null) {
+                // New location: the weather rows pick up its id from the result of this insert.
+                locationInsert = operations.size();
+                operations.add(ContentProviderOperation
+                        .newInsert(LocationEntry.CONTENT_URI)
+                        .withValues(getLocationValues(location))
+                        .build());
+            }
+            WeatherBatch days = WeatherBatch.fromBundle(location);
+            if (locationId != null && days.size() > 0) {
+                // Replace the location's forecast window, rather than only the dates we got.
+                operations.add(ContentProviderOperation
+                        .newDelete(WeatherEntry.CONTENT_URI)
+                        .withSelection(WeatherEntry.COLUMN_LOC_KEY + " = ? AND "
+                                + WeatherEntry.COLUMN_DATE + " >= ?", new String[]{
+                                Long.toString(locationId),
+                                Long.toString(WeatherContract.normalizeDate(days.getFirstDate()))})
+                        .build());
+            }
+            for (ContentValues weatherValues : days.toContentValues()) {
+                ContentProviderOperation.Builder insert = ContentProviderOperation
+                        .newInsert(WeatherEntry.CONTENT_URI)
+                        .withValues(weatherValues);
+                if (locationId != null) {
+                    insert.withValue(WeatherEntry.COLUMN_LOC_KEY, locationId);
+                } else {
+                    insert.withValueBackReference(WeatherEntry.COLUMN_LOC_KEY, locationInsert);
+                }
+                operations.add(insert.build());
+                inserted++;
+            }
+        }
+
+        // delete old data so we don't build up an endless history
+        operations.add(ContentProviderOperation
+                .newDelete(WeatherEntry.CONTENT_URI)
+                .withSelection(WeatherEntry.COLUMN_DATE + " < ?",
+                        new String[]{Long.toString(mPruneBefore)})
+                .build());
+
+        resolver.applyBatch(WeatherContract.CONTENT_AUTHORITY, operations);
+        return inserted;
+    }
+
+    private static Map<String, Long> getLocationIds(ContentResolver resolver) {
+        Map<String, Long> locationIds = new HashMap<String, Long>();
+        Cursor cursor = resolver.query(LocationEntry.CONTENT_URI,
+                new String[]{LocationEntry._ID, LocationEntry.COLUMN_LOCATION_SETTING},
+                null, null, null);
+        if (cursor != null) {
+            while (cursor.moveToNext()) {
+                locationIds.put(cursor.getString(1), cursor.getLong(0));
+            }
+            cursor.close();
+        }
+        return locationIds;
+    }
+
+    static ContentValues getLocationValues(Bundle location) {
+        ContentValues values = new ContentValues();
+        values.put(LocationEntry.COLUMN_LOCATION_SETTING,
+                location.getString(LocationEntry.COLUMN_LOCATION_SETTING));
+        values.put(LocationEntry.COLUMN_CITY_NAME,
+                location.getString(LocationEntry.COLUMN_CITY_NAME));
+        values.put(LocationEntry.COLUMN_COORD_LAT,
+                location.getDouble(LocationEntry.COLUMN_COORD_LAT));
+        values.put(LocationEntry.COLUMN_COORD_LONG,
+                location.getDouble(LocationEntry.COLUMN_COORD_LONG));
+        return values;
+    }
+
+    public Bundle toBundle() {
+        Bundle bundle = new Bundle();
+        bundle.putLong(KEY_PRUNE_BEFORE, mPruneBefore);
+        bundle.putParcelableArrayList(KEY_LOCATIONS, mLocations);
+        return bundle;
+    }
+
+    /**
+     * @throws IllegalArgumentException if the bundle doesn't hold a commit
+     */
+    static ForecastCommit fromBundle(Bundle bundle) {
+        if (bundle == null || !bundle.containsKey(KEY_PRUNE_BEFORE)) {
+            throw new IllegalArgumentException("Bundle doesn't hold a forecast commit");
+        }
+        ArrayList<Bundle> locations = bundle.getParcelableArrayList(KEY_LOCATIONS);
+        if (locations == null) {
+            locations = new ArrayList<Bundle>();
+        }
+        return new ForecastCommit(bundle.getLong(KEY_PRUNE_BEFORE), locations);
+    }
+}
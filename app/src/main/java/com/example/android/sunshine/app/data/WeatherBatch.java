@@ -0,0 +1,218 @@
+/*
+ * Copyright (C) 2015 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.sunshine.app.data;
+
+import android.annotation.TargetApi;
+import android.content.ContentResolver;
+import android.content.ContentValues;
+import android.os.Build;
+import android.os.Bundle;
+
+import com.example.android.sunshine.app.data.WeatherContract.WeatherEntry;
+
+import java.util.Arrays;
+
+/**
+ * Weather rows for a bulk insert, held column by column in primitive arrays instead of as one
+ * ContentValues per row.  Nothing is boxed on the way in, and the provider binds the arrays
+ * straight into its compiled insert statement.
+ *
+ * Rows are added with {@link #add}; the location can be filled in afterwards with
+ * {@link #setLocationId} if it isn't known yet when the rows are read.
+ */
+public class WeatherBatch {
+
+    // Bundle keys.  The column arrays are stored under their column names.
+    private static final String KEY_SIZE = "size";
+
+    int mSize;
+    long[] mLocationIds;
+    long[] mDates;
+    int[] mWeatherIds;
+    String[] mShortDescs;
+    double[] mMinTemps;
+    double[] mMaxTemps;
+    double[] mHumidities;
+    double[] mPressures;
+    double[] mWindSpeeds;
+    double[] mDegrees;
+
+    public WeatherBatch(int capacity) {
+        capacity = Math.max(capacity, 1);
+        mLocationIds = new long[capacity];
+        mDates = new long[capacity];
+        mWeatherIds = new int[capacity];
+        mShortDescs = new String[capacity];
+        mMinTemps = new double[capacity];
+        mMaxTemps = new double[capacity];
+        mHumidities = new double[capacity];
+        mPressures = new double[capacity];
+        mWindSpeeds = new double[capacity];
+        mDegrees = new double[capacity];
+    }
+
+    /**
+     * Appends a row.  {@code date} doesn't have to be normalized; the provider does that.
+     */
+    public void add(long locationId, long date, int weatherId, String shortDesc,
+                    double minTemp, double maxTemp, double humidity, double pressure,
+                    double windSpeed, double degrees) {
+        if (mSize == mDates.length) {
+            grow(mSize * 2);
+        }
+        int row = mSize++;
+        mLocationIds[row] = locationId;
+        mDates[row] = date;
+        mWeatherIds[row] = weatherId;
+        mShortDescs[row] = shortDesc;
+        mMinTemps[row] = minTemp;
+        mMaxTemps[row] = maxTemp;
+        mHumidities[row] = humidity;
+        mPressures[row] = pressure;
+        mWindSpeeds[row] = windSpeed;
+        mDegrees[row] = degrees;
+    }
+
+    /**
+     * Points every row in the batch at the given location.
+     */
+    public void setLocationId(long locationId) {
+        Arrays.fill(mLocationIds, 0, mSize, locationId);
+    }
+
+    public int size() {
+        return mSize;
+    }
+
+    public int getWeatherId(int row) {
+        return mWeatherIds[row];
+    }
+
+    /**
+     * @return the earliest date in the batch, which mustn't be empty
+     */
+    long getFirstDate() {
+        long firstDate = mDates[0];
+        for (int row = 1; row < mSize; row++) {
+            firstDate = Math.min(firstDate, mDates[row]);
+        }
+        return firstDate;
+    }
+
+    private void grow(int capacity) {
+        mLocationIds = Arrays.copyOf(mLocationIds, capacity);
+        mDates = Arrays.copyOf(mDates, capacity);
+        mWeatherIds = Arrays.copyOf(mWeatherIds, capacity);
+        mShortDescs = Arrays.copyOf(mShortDescs, capacity);
+        mMinTemps = Arrays.copyOf(mMinTemps, capacity);
+        mMaxTemps = Arrays.copyOf(mMaxTemps, capacity);
+        mHumidities = Arrays.copyOf(mHumidities, capacity);
+        mPressures = Arrays.copyOf(mPressures, capacity);
+        mWindSpeeds = Arrays.copyOf(mWindSpeeds, capacity);
+        mDegrees = Arrays.copyOf(mDegrees, capacity);
+    }
+
+    /**
+     * Inserts the batch into the weather table, in one transaction.  On Honeycomb and higher
+     * the arrays go to the provider as they are; older platforms can't call into a provider,
+     * so the rows are converted to ContentValues for a plain bulkInsert.
+     *
+     * @return the number of rows inserted
+     */
+    public int insert(ContentResolver resolver) {
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.HONEYCOMB) {
+            return insertByCall(resolver);
+        } else {
+            return resolver.bulkInsert(WeatherEntry.CONTENT_URI, toContentValues());
+        }
+    }
+
+    @TargetApi(Build.VERSION_CODES.HONEYCOMB)
+    private int insertByCall(ContentResolver resolver) {
+        Bundle result = resolver.call(WeatherEntry.CONTENT_URI,
+                WeatherContract.METHOD_BULK_INSERT_WEATHER, null, toBundle());
+        return result == null ? 0 : result.getInt(WeatherContract.EXTRA_ROW_COUNT);
+    }
+
+    public Bundle toBundle() {
+        Bundle bundle = new Bundle();
+        bundle.putInt(KEY_SIZE, mSize);
+        bundle.putLongArray(WeatherEntry.COLUMN_LOC_KEY, Arrays.copyOf(mLocationIds, mSize));
+        bundle.putLongArray(WeatherEntry.COLUMN_DATE, Arrays.copyOf(mDates, mSize));
+        bundle.putIntArray(WeatherEntry.COLUMN_WEATHER_ID, Arrays.copyOf(mWeatherIds, mSize));
+        bundle.putStringArray(WeatherEntry.COLUMN_SHORT_DESC, Arrays.copyOf(mShortDescs, mSize));
+        bundle.putDoubleArray(WeatherEntry.COLUMN_MIN_TEMP, Arrays.copyOf(mMinTemps, mSize));
+        bundle.putDoubleArray(WeatherEntry.COLUMN_MAX_TEMP, Arrays.copyOf(mMaxTemps, mSize));
+        bundle.putDoubleArray(WeatherEntry.COLUMN_HUMIDITY, Arrays.copyOf(mHumidities, mSize));
+        bundle.putDoubleArray(WeatherEntry.COLUMN_PRESSURE, Arrays.copyOf(mPressures, mSize));
+        bundle.putDoubleArray(WeatherEntry.COLUMN_WIND_SPEED, Arrays.copyOf(mWindSpeeds, mSize));
+        bundle.putDoubleArray(WeatherEntry.COLUMN_DEGREES, Arrays.copyOf(mDegrees, mSize));
+        return bundle;
+    }
+
+    /**
+     * @throws IllegalArgumentException if the bundle doesn't hold a complete batch
+     */
+    public static WeatherBatch fromBundle(Bundle bundle) {
+        if (bundle == null || !bundle.containsKey(KEY_SIZE)) {
+            throw new IllegalArgumentException("Bundle doesn't hold a weather batch");
+        }
+        WeatherBatch batch = new WeatherBatch(0);
+        batch.mSize = bundle.getInt(KEY_SIZE);
+        batch.mLocationIds = bundle.getLongArray(WeatherEntry.COLUMN_LOC_KEY);
+        batch.mDates = bundle.getLongArray(WeatherEntry.COLUMN_DATE);
+        batch.mWeatherIds = bundle.getIntArray(WeatherEntry.COLUMN_WEATHER_ID);
+        batch.mShortDescs = bundle.getStringArray(WeatherEntry.COLUMN_SHORT_DESC);
+        batch.mMinTemps = bundle.getDoubleArray(WeatherEntry.COLUMN_MIN_TEMP);
+        batch.mMaxTemps = bundle.getDoubleArray(WeatherEntry.COLUMN_MAX_TEMP);
+        batch.mHumidities = bundle.getDoubleArray(WeatherEntry.COLUMN_HUMIDITY);
+        batch.mPressures = bundle.getDoubleArray(WeatherEntry.COLUMN_PRESSURE);
+        batch.mWindSpeeds = bundle.getDoubleArray(WeatherEntry.COLUMN_WIND_SPEED);
+        batch.mDegrees = bundle.getDoubleArray(WeatherEntry.COLUMN_DEGREES);
+        if (batch.mLocationIds == null || batch.mLocationIds.length < batch.mSize
+                || batch.mDates == null || batch.mDates.length < batch.mSize
+                || batch.mWeatherIds == null || batch.mWeatherIds.length < batch.mSize
+                || batch.mShortDescs == null || batch.mShortDescs.length < batch.mSize
+                || batch.mMinTemps == null || batch.mMinTemps.length < batch.mSize
+                || batch.mMaxTemps == null || batch.mMaxTemps.length < batch.mSize
+                || batch.mHumidities == null || batch.mHumidities.length < batch.mSize
+                || batch.mPressures == null || batch.mPressures.length < batch.mSize
+                || batch.mWindSpeeds == null || batch.mWindSpeeds.length < batch.mSize
+                || batch.mDegrees == null || batch.mDegrees.length < batch.mSize) {
+            throw new IllegalArgumentException("Weather batch is missing columns");
+        }
+        return batch;
+    }
+
+    public ContentValues[] toContentValues() {
+        ContentValues[] values = new ContentValues[mSize];
+        for (int row = 0; row < mSize; row++) {
+            ContentValues weatherValues = new ContentValues();
+            weatherValues.put(WeatherEntry.COLUMN_LOC_KEY, mLocationIds[row]);
+            weatherValues.put(WeatherEntry.COLUMN_DATE, mDates[row]);
+            weatherValues.put(WeatherEntry.COLUMN_WEATHER_ID, mWeatherIds[row]);
+            weatherValues.put(WeatherEntry.COLUMN_SHORT_DESC, mShortDescs[row]);
+            weatherValues.put(WeatherEntry.COLUMN_MIN_TEMP, mMinTemps[row]);
+            weatherValues.put(WeatherEntry.COLUMN_MAX_TEMP, mMaxTemps[row]);
+            weatherValues.put(WeatherEntry.COLUMN_HUMIDITY, mHumidities[row]);
+            weatherValues.put(WeatherEntry.COLUMN_PRESSURE, mPressures[row]);
+            weatherValues.put(WeatherEntry.COLUMN_WIND_SPEED, mWindSpeeds[row]);
+            weatherValues.put(WeatherEntry.COLUMN_DEGREES, mDegrees[row]);
+            values[row] = weatherValues;
+        }
+        return values;
+    }
+}
@@ -47,13 +47,36 @@ public class WeatherContract {
     // To make it easy to query for the exact date, we normalize all dates that go into
     // the database to the start of the the Julian day at UTC.
     public static long normalizeDate(long startDate) {
+        return normalizeDate(startDate, new Time());
+    }
+
+    // Same as above, reusing the caller's Time so that normalizing many dates doesn't allocate.
+    static long normalizeDate(long startDate, Time time) {
         // normalize the start date to the beginning of the (UTC) day
-        Time time = new Time();
         time.set(startDate);
         int julianDay = Time.getJulianDay(startDate, time.gmtoff);
         return time.setJulianDay(julianDay);
     }
 
+    // Provider methods, for ContentResolver.call().
+
+    // Bulk inserts the WeatherBatch held in the extras.  The result holds EXTRA_ROW_COUNT.
+    public static final String METHOD_BULK_INSERT_WEATHER = "bulk_insert_weather";
+
+    // Applies the ForecastCommit held in the extras: upserts each location, replaces its
+    // forecast and prunes old days, all in one transaction.  The result holds EXTRA_ROW_COUNT.
+    public static final String METHOD_COMMIT_FORECAST = "commit_forecast";
+
+    // Number of rows a provider method wrote.
+    public static final String EXTRA_ROW_COUNT = "row_count";
+
+    // Returns how often queries for a location were answered from the provider's result cache,
+    // under EXTRA_CACHE_HITS, and how often they had to go to the database, under
+    // EXTRA_CACHE_MISSES.
+    public static final String METHOD_GET_QUERY_CACHE_STATS = "get_query_cache_stats";
+    public static final String EXTRA_CACHE_HITS = "cache_hits";
+    public static final String EXTRA_CACHE_MISSES = "cache_misses";
+
     /* Inner class that defines the table contents of the location table */
     public static final class LocationEntry implements BaseColumns {
 
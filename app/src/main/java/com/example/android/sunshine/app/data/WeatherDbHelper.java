@@ -15,9 +15,11 @@
  */
 package com.example.android.sunshine.app.data;
 
+import android.annotation.TargetApi;
 import android.content.Context;
 import android.database.sqlite.SQLiteDatabase;
 import android.database.sqlite.SQLiteOpenHelper;
+import android.os.Build;
 
 import com.example.android.sunshine.app.data.WeatherContract.LocationEntry;
 import com.example.android.sunshine.app.data.WeatherContract.WeatherEntry;
@@ -27,13 +29,66 @@ import com.example.android.sunshine.app.data.WeatherContract.WeatherEntry;
  */
 public class WeatherDbHelper extends SQLiteOpenHelper {
 
-    // If you change the database schema, you must increment the database version.
-    private static final int DATABASE_VERSION = 2;
+    // If you change the database schema, you must increment the database version, and add the
+    // step from the previous version to upgrade().
+    static final int DATABASE_VERSION = 3;
+
+    // Databases older than this are thrown away on upgrade instead of migrated.
+    static final int OLDEST_MIGRATED_VERSION = 2;
 
     static final String DATABASE_NAME = "weather.db";
 
+    static final String WEATHER_LOCATION_DATE_INDEX = "weather_location_date";
+
+    // Every forecast the provider hands out is for one location, from a date onwards or on a
+    // single date.  The UNIQUE (date, location_id) constraint comes with an index, but its column
+    // order only helps when looking up by date; this one lets SQLite go straight to a location's
+    // rows, already in date order.  (The date-first index still serves pruning old days.)
+    static final String SQL_CREATE_WEATHER_LOCATION_DATE_INDEX =
+            "CREATE INDEX " + WEATHER_LOCATION_DATE_INDEX + " ON " + WeatherEntry.TABLE_NAME +
+                    " (" + WeatherEntry.COLUMN_LOC_KEY + ", " + WeatherEntry.COLUMN_DATE + ");";
+
     public WeatherDbHelper(Context context) {
         super(context, DATABASE_NAME, null, DATABASE_VERSION);
+        // With write-ahead logging, readers (the loaders, widgets, Muzei and the wearable) get
+        // their own connections and keep reading the last committed forecast while a sync is
+        // writing the next one, instead of waiting for it to commit.
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.JELLY_BEAN) {
+            setWriteAheadLoggingEnabled(true);
+        }
+    }
+
+    @Override
+    public void onOpen(SQLiteDatabase db) {
+        super.onOpen(db);
+        // Before Jelly Bean the helper can't be asked for WAL up front, so switch it on here.
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.HONEYCOMB
+                && Build.VERSION.SDK_INT < Build.VERSION_CODES.JELLY_BEAN
+                && !db.isReadOnly()) {
+            enableWriteAheadLogging(db);
+        }
+    }
+
+    @TargetApi(Build.VERSION_CODES.HONEYCOMB)
+    private static void enableWriteAheadLogging(SQLiteDatabase db) {
+        db.enableWriteAheadLogging();
+    }
+
+    /**
+     * Starts a write transaction that doesn't lock readers out.  In WAL mode they read the last
+     * commit on their own connections; before Honeycomb there is only the exclusive kind.
+     */
+    static void beginWriteTransaction(SQLiteDatabase db) {
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.HONEYCOMB) {
+            beginTransactionNonExclusive(db);
+        } else {
+            db.beginTransaction();
+        }
+    }
+
+    @TargetApi(Build.VERSION_CODES.HONEYCOMB)
+    private static void beginTransactionNonExclusive(SQLiteDatabase db) {
+        db.beginTransactionNonExclusive();
     }
 
     @Override
@@ -81,18 +136,40 @@ public class WeatherDbHelper extends SQLiteOpenHelper {
 
         sqLiteDatabase.execSQL(SQL_CREATE_LOCATION_TABLE);
         sqLiteDatabase.execSQL(SQL_CREATE_WEATHER_TABLE);
+        sqLiteDatabase.execSQL(SQL_CREATE_WEATHER_LOCATION_DATE_INDEX);
     }
 
     @Override
     public void onUpgrade(SQLiteDatabase sqLiteDatabase, int oldVersion, int newVersion) {
-        // This database is only a cache for online data, so its upgrade policy is
-        // to simply to discard the data and start over
+        // This database is only a cache for online data, but throwing it away means every user
+        // starts the new release with an empty screen while the whole forecast is fetched again.
+        // So the schema is carried forward one version at a time, keeping the rows.
         // Note that this only fires if you change the version number for your database.
         // It does NOT depend on the version number for your application.
-        // If you want to update the schema without wiping data, commenting out the next 2 lines
-        // should be your top priority before modifying this method.
-        sqLiteDatabase.execSQL("DROP TABLE IF EXISTS " + LocationEntry.TABLE_NAME);
-        sqLiteDatabase.execSQL("DROP TABLE IF EXISTS " + WeatherEntry.TABLE_NAME);
-        onCreate(sqLiteDatabase);
+        if (oldVersion < OLDEST_MIGRATED_VERSION) {
+            // We don't keep the steps up from schemas this old; start over.
+            sqLiteDatabase.execSQL("DROP TABLE IF EXISTS " + LocationEntry.TABLE_NAME);
+            sqLiteDatabase.execSQL("DROP TABLE IF EXISTS " + WeatherEntry.TABLE_NAME);
+            onCreate(sqLiteDatabase);
+            return;
+        }
+        // SQLiteOpenHelper runs this in a transaction, so a failed step leaves the old version.
+        for (int version = oldVersion; version < newVersion; version++) {
+            upgrade(sqLiteDatabase, version);
+        }
+    }
+
+    /**
+     * Migrates the schema from {@code fromVersion} to the version after it.
+     */
+    private static void upgrade(SQLiteDatabase sqLiteDatabase, int fromVersion) {
+        switch (fromVersion) {
+            case 2:
+                // 3 indexes weather by location, then date.
+                sqLiteDatabase.execSQL(SQL_CREATE_WEATHER_LOCATION_DATE_INDEX);
+                break;
+            default:
+                throw new IllegalStateException("No upgrade from database version " + fromVersion);
+        }
     }
 }
@@ -17,25 +17,47 @@ package com.example.android.sunshine.app.data;
 
 import android.annotation.TargetApi;
 import android.content.ContentProvider;
+import android.content.ContentProviderOperation;
+import android.content.ContentProviderResult;
 import android.content.ContentValues;
+import android.content.OperationApplicationException;
 import android.content.UriMatcher;
 import android.database.Cursor;
+import android.database.DatabaseUtils;
+import android.database.SQLException;
 import android.database.sqlite.SQLiteDatabase;
 import android.database.sqlite.SQLiteQueryBuilder;
+import android.database.sqlite.SQLiteStatement;
 import android.net.Uri;
+import android.os.Build;
+import android.os.Bundle;
+import android.text.TextUtils;
+import android.text.format.Time;
+import android.util.Log;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.Set;
 
 public class WeatherProvider extends ContentProvider {
+    private static final String LOG_TAG = WeatherProvider.class.getSimpleName();
 
     // The URI Matcher used by this content provider.
-    private static final UriMatcher sUriMatcher = buildUriMatcher();
+    static final UriMatcher sUriMatcher = buildUriMatcher();
     private WeatherDbHelper mOpenHelper;
+    private final WeatherQueryCache mQueryCache = new WeatherQueryCache();
+
+    // While applyBatch runs on a thread, the notifications of its operations collect here and
+    // are sent once its transaction has been committed.
+    private final ThreadLocal<Set<Uri>> mPendingNotifications = new ThreadLocal<Set<Uri>>();
 
     static final int WEATHER = 100;
     static final int WEATHER_WITH_LOCATION = 101;
     static final int WEATHER_WITH_LOCATION_AND_DATE = 102;
     static final int LOCATION = 300;
 
-    private static final SQLiteQueryBuilder sWeatherByLocationSettingQueryBuilder;
+    static final SQLiteQueryBuilder sWeatherByLocationSettingQueryBuilder;
 
     static{
         sWeatherByLocationSettingQueryBuilder = new SQLiteQueryBuilder();
@@ -52,22 +74,35 @@ public class WeatherProvider extends ContentProvider {
     }
 
     //location.location_setting = ?
-    private static final String sLocationSettingSelection =
+    static final String sLocationSettingSelection =
             WeatherContract.LocationEntry.TABLE_NAME+
                     "." + WeatherContract.LocationEntry.COLUMN_LOCATION_SETTING + " = ? ";
 
     //location.location_setting = ? AND date >= ?
-    private static final String sLocationSettingWithStartDateSelection =
+    static final String sLocationSettingWithStartDateSelection =
             WeatherContract.LocationEntry.TABLE_NAME+
                     "." + WeatherContract.LocationEntry.COLUMN_LOCATION_SETTING + " = ? AND " +
                     WeatherContract.WeatherEntry.COLUMN_DATE + " >= ? ";
 
     //location.location_setting = ? AND date = ?
-    private static final String sLocationSettingAndDaySelection =
+    static final String sLocationSettingAndDaySelection =
             WeatherContract.LocationEntry.TABLE_NAME +
                     "." + WeatherContract.LocationEntry.COLUMN_LOCATION_SETTING + " = ? AND " +
                     WeatherContract.WeatherEntry.COLUMN_DATE + " = ? ";
 
+    //location_setting = ?, on the location table alone
+    static final String sLocationSettingOnlySelection =
+            WeatherContract.LocationEntry.COLUMN_LOCATION_SETTING + " = ?";
+
+    //weather.location_id = ? AND date >= ?
+    static final String sLocationIdWithStartDateSelection =
+            WeatherContract.WeatherEntry.COLUMN_LOC_KEY + " = ? AND " +
+                    WeatherContract.WeatherEntry.COLUMN_DATE + " >= ?";
+
+    //date < ?
+    static final String sBeforeDateSelection =
+            WeatherContract.WeatherEntry.COLUMN_DATE + " < ?";
+
     private Cursor getWeatherByLocationSetting(Uri uri, String[] projection, String sortOrder) {
         String locationSetting = WeatherContract.WeatherEntry.getLocationSettingFromUri(uri);
         long startDate = WeatherContract.WeatherEntry.getStartDateFromUri(uri);
@@ -108,6 +143,33 @@ public class WeatherProvider extends ContentProvider {
         );
     }
 
+    /*
+        Results for a location are served from mQueryCache when it has them.  The cache fills
+        its windows with DatabaseUtils.cursorFillWindow, so before Honeycomb every query goes
+        to SQLite.
+     */
+    private Cursor getWeatherForLocation(Uri uri, String[] projection, String sortOrder) {
+        if (Build.VERSION.SDK_INT < Build.VERSION_CODES.HONEYCOMB) {
+            return queryWeatherForLocation(uri, projection, sortOrder);
+        }
+        String key = WeatherQueryCache.buildKey(uri, projection, sortOrder);
+        Cursor cached = mQueryCache.get(key);
+        if (cached != null) {
+            return cached;
+        }
+        int generation = mQueryCache.getGeneration();
+        return mQueryCache.put(key, generation,
+                WeatherContract.WeatherEntry.getLocationSettingFromUri(uri),
+                queryWeatherForLocation(uri, projection, sortOrder));
+    }
+
+    private Cursor queryWeatherForLocation(Uri uri, String[] projection, String sortOrder) {
+        if (sUriMatcher.match(uri) == WEATHER_WITH_LOCATION_AND_DATE) {
+            return getWeatherByLocationSettingAndDate(uri, projection, sortOrder);
+        }
+        return getWeatherByLocationSetting(uri, projection, sortOrder);
+    }
+
     /*
         Students: Here is where you need to create the UriMatcher. This UriMatcher will
         match each URI to the WEATHER, WEATHER_WITH_LOCATION, WEATHER_WITH_LOCATION_AND_DATE,
@@ -178,13 +240,9 @@ public class WeatherProvider extends ContentProvider {
         switch (sUriMatcher.match(uri)) {
             // "weather/*/*"
             case WEATHER_WITH_LOCATION_AND_DATE:
-            {
-                retCursor = getWeatherByLocationSettingAndDate(uri, projection, sortOrder);
-                break;
-            }
             // "weather/*"
             case WEATHER_WITH_LOCATION: {
-                retCursor = getWeatherByLocationSetting(uri, projection, sortOrder);
+                retCursor = getWeatherForLocation(uri, projection, sortOrder);
                 break;
             }
             // "weather"
@@ -238,7 +296,9 @@ public class WeatherProvider extends ContentProvider {
                     returnUri = WeatherContract.WeatherEntry.buildWeatherUri(_id);
                 else
                     throw new android.database.SQLException("Failed to insert row into " + uri);
-                break;
+                notifyWeatherDay(db, values.getAsLong(WeatherContract.WeatherEntry.COLUMN_LOC_KEY),
+                        values.getAsLong(WeatherContract.WeatherEntry.COLUMN_DATE));
+                return returnUri;
             }
             case LOCATION: {
                 long _id = db.insert(WeatherContract.LocationEntry.TABLE_NAME, null, values);
@@ -251,7 +311,7 @@ public class WeatherProvider extends ContentProvider {
             default:
                 throw new UnsupportedOperationException("Unknown uri: " + uri);
         }
-        getContext().getContentResolver().notifyChange(uri, null);
+        notifyChange(uri);
         return returnUri;
     }
 
@@ -264,9 +324,26 @@ public class WeatherProvider extends ContentProvider {
         if ( null == selection ) selection = "1";
         switch (match) {
             case WEATHER:
-                rowsDeleted = db.delete(
-                        WeatherContract.WeatherEntry.TABLE_NAME, selection, selectionArgs);
-                break;
+                if ("1".equals(selection)) {
+                    rowsDeleted = db.delete(
+                            WeatherContract.WeatherEntry.TABLE_NAME, selection, selectionArgs);
+                    break;
+                }
+                // Find out whose weather is going before it goes, so that only they are told.
+                Set<Long> locationIds;
+                WeatherDbHelper.beginWriteTransaction(db);
+                try {
+                    locationIds = getWeatherLocationIds(db, selection, selectionArgs);
+                    rowsDeleted = db.delete(
+                            WeatherContract.WeatherEntry.TABLE_NAME, selection, selectionArgs);
+                    db.setTransactionSuccessful();
+                } finally {
+                    db.endTransaction();
+                }
+                if (rowsDeleted != 0) {
+                    notifyWeatherLocations(db, locationIds);
+                }
+                return rowsDeleted;
             case LOCATION:
                 rowsDeleted = db.delete(
                         WeatherContract.LocationEntry.TABLE_NAME, selection, selectionArgs);
@@ -276,7 +353,7 @@ public class WeatherProvider extends ContentProvider {
         }
         // Because a null deletes all rows
         if (rowsDeleted != 0) {
-            getContext().getContentResolver().notifyChange(uri, null);
+            notifyChange(uri);
         }
         return rowsDeleted;
     }
@@ -299,9 +376,25 @@ public class WeatherProvider extends ContentProvider {
         switch (match) {
             case WEATHER:
                 normalizeDate(values);
-                rowsUpdated = db.update(WeatherContract.WeatherEntry.TABLE_NAME, values, selection,
-                        selectionArgs);
-                break;
+                Set<Long> locationIds;
+                WeatherDbHelper.beginWriteTransaction(db);
+                try {
+                    locationIds = getWeatherLocationIds(db, selection, selectionArgs);
+                    rowsUpdated = db.update(WeatherContract.WeatherEntry.TABLE_NAME, values,
+                            selection, selectionArgs);
+                    db.setTransactionSuccessful();
+                } finally {
+                    db.endTransaction();
+                }
+                // Rows may also have been moved to another location.
+                Long newLocationId = values.getAsLong(WeatherContract.WeatherEntry.COLUMN_LOC_KEY);
+                if (newLocationId != null) {
+                    locationIds.add(newLocationId);
+                }
+                if (rowsUpdated != 0) {
+                    notifyWeatherLocations(db, locationIds);
+                }
+                return rowsUpdated;
             case LOCATION:
                 rowsUpdated = db.update(WeatherContract.LocationEntry.TABLE_NAME, values, selection,
                         selectionArgs);
@@ -310,38 +403,408 @@ public class WeatherProvider extends ContentProvider {
                 throw new UnsupportedOperationException("Unknown uri: " + uri);
         }
         if (rowsUpdated != 0) {
-            getContext().getContentResolver().notifyChange(uri, null);
+            notifyChange(uri);
         }
         return rowsUpdated;
     }
 
+    // The weather columns written by the compiled bulk insert, in binding order.
+    private static final String[] sWeatherInsertColumns = {
+            WeatherContract.WeatherEntry.COLUMN_LOC_KEY,
+            WeatherContract.WeatherEntry.COLUMN_DATE,
+            WeatherContract.WeatherEntry.COLUMN_WEATHER_ID,
+            WeatherContract.WeatherEntry.COLUMN_SHORT_DESC,
+            WeatherContract.WeatherEntry.COLUMN_MIN_TEMP,
+            WeatherContract.WeatherEntry.COLUMN_MAX_TEMP,
+            WeatherContract.WeatherEntry.COLUMN_HUMIDITY,
+            WeatherContract.WeatherEntry.COLUMN_PRESSURE,
+            WeatherContract.WeatherEntry.COLUMN_WIND_SPEED,
+            WeatherContract.WeatherEntry.COLUMN_DEGREES
+    };
+
+    // These indices are tied to sWeatherInsertColumns.  Statement bindings start at 1.
+    private static final int BIND_LOC_KEY = 1;
+    private static final int BIND_DATE = 2;
+    private static final int BIND_WEATHER_ID = 3;
+    private static final int BIND_SHORT_DESC = 4;
+    private static final int BIND_MIN_TEMP = 5;
+    private static final int BIND_MAX_TEMP = 6;
+    private static final int BIND_HUMIDITY = 7;
+    private static final int BIND_PRESSURE = 8;
+    private static final int BIND_WIND_SPEED = 9;
+    private static final int BIND_DEGREES = 10;
+
+    // INSERT INTO weather (location_id, date, ...) VALUES (?, ?, ...)
+    // The table's UNIQUE (date, location_id) ON CONFLICT REPLACE still applies.
+    private static final String sWeatherInsertSql;
+
+    static {
+        StringBuilder sql = new StringBuilder("INSERT INTO ")
+                .append(WeatherContract.WeatherEntry.TABLE_NAME).append(" (")
+                .append(TextUtils.join(",", sWeatherInsertColumns))
+                .append(") VALUES (?");
+        for (int i = 1; i < sWeatherInsertColumns.length; i++) {
+            sql.append(",?");
+        }
+        sWeatherInsertSql = sql.append(')').toString();
+    }
+
+    /*
+        Weather rows are written through a single compiled statement per transaction: the SQL is
+        planned once and every row only binds its values.  Rows that don't carry exactly the
+        columns of the statement go through SQLiteDatabase.insert as before.
+     */
     @Override
     public int bulkInsert(Uri uri, ContentValues[] values) {
         final SQLiteDatabase db = mOpenHelper.getWritableDatabase();
         final int match = sUriMatcher.match(uri);
         switch (match) {
             case WEATHER:
-                db.beginTransaction();
+                WeatherDbHelper.beginWriteTransaction(db);
                 int returnCount = 0;
+                SQLiteStatement insert = db.compileStatement(sWeatherInsertSql);
+                Time time = new Time();
+                Set<Long> locationIds = new HashSet<Long>();
                 try {
                     for (ContentValues value : values) {
-                        normalizeDate(value);
-                        long _id = db.insert(WeatherContract.WeatherEntry.TABLE_NAME, null, value);
+                        long _id;
+                        if (hasWeatherInsertColumns(value)) {
+                            // Callers have always seen the normalized date in their values
+                            // afterwards, so it is still written back.
+                            long date = WeatherContract.normalizeDate(value.getAsLong(
+                                    WeatherContract.WeatherEntry.COLUMN_DATE), time);
+                            value.put(WeatherContract.WeatherEntry.COLUMN_DATE, date);
+                            bindWeatherValues(insert, value, date);
+                            _id = executeInsert(insert);
+                        } else {
+                            normalizeDate(value);
+                            _id = db.insert(WeatherContract.WeatherEntry.TABLE_NAME, null, value);
+                        }
                         if (_id != -1) {
                             returnCount++;
+                            // The location id is NOT NULL, so an inserted row has one.
+                            locationIds.add(value.getAsLong(
+                                    WeatherContract.WeatherEntry.COLUMN_LOC_KEY));
                         }
                     }
                     db.setTransactionSuccessful();
                 } finally {
+                    insert.close();
                     db.endTransaction();
                 }
-                getContext().getContentResolver().notifyChange(uri, null);
+                notifyWeatherLocations(db, locationIds);
                 return returnCount;
             default:
                 return super.bulkInsert(uri, values);
         }
     }
 
+    /**
+     * Inserts a {@link WeatherBatch} in one transaction, binding its arrays straight into the
+     * compiled insert statement.
+     *
+     * @return the number of rows inserted
+     */
+    int bulkInsert(WeatherBatch batch) {
+        final SQLiteDatabase db = mOpenHelper.getWritableDatabase();
+        WeatherDbHelper.beginWriteTransaction(db);
+        SQLiteStatement insert = db.compileStatement(sWeatherInsertSql);
+        int returnCount;
+        try {
+            returnCount = insertBatch(insert, batch, new Time());
+            db.setTransactionSuccessful();
+        } finally {
+            insert.close();
+            db.endTransaction();
+        }
+        Set<Long> locationIds = new HashSet<Long>();
+        for (int row = 0; row < batch.mSize; row++) {
+            locationIds.add(batch.mLocationIds[row]);
+        }
+        notifyWeatherLocations(db, locationIds);
+        return returnCount;
+    }
+
+    private static int insertBatch(SQLiteStatement insert, WeatherBatch batch, Time time) {
+        int returnCount = 0;
+        for (int row = 0; row < batch.mSize; row++) {
+            insert.bindLong(BIND_LOC_KEY, batch.mLocationIds[row]);
+            insert.bindLong(BIND_DATE, WeatherContract.normalizeDate(batch.mDates[row], time));
+            insert.bindLong(BIND_WEATHER_ID, batch.mWeatherIds[row]);
+            bindString(insert, BIND_SHORT_DESC, batch.mShortDescs[row]);
+            insert.bindDouble(BIND_MIN_TEMP, batch.mMinTemps[row]);
+            insert.bindDouble(BIND_MAX_TEMP, batch.mMaxTemps[row]);
+            insert.bindDouble(BIND_HUMIDITY, batch.mHumidities[row]);
+            insert.bindDouble(BIND_PRESSURE, batch.mPressures[row]);
+            insert.bindDouble(BIND_WIND_SPEED, batch.mWindSpeeds[row]);
+            insert.bindDouble(BIND_DEGREES, batch.mDegrees[row]);
+            if (executeInsert(insert) != -1) {
+                returnCount++;
+            }
+        }
+        return returnCount;
+    }
+
+    /**
+     * Applies a {@link ForecastCommit}: every location is inserted or updated, its forecast
+     * window is replaced by the new days, and the days before the commit's prune date are
+     * dropped.  It all happens in one transaction, so there is one fsync, and then one change
+     * notification goes out for each location that was written or pruned.
+     *
+     * @return the number of weather rows written
+     */
+    int commitForecast(ForecastCommit commit) {
+        final SQLiteDatabase db = mOpenHelper.getWritableDatabase();
+        WeatherDbHelper.beginWriteTransaction(db);
+        SQLiteStatement insert = db.compileStatement(sWeatherInsertSql);
+        Time time = new Time();
+        int returnCount = 0;
+        Set<Long> locationIds;
+        try {
+            String[] pruneArgs = new String[]{Long.toString(commit.mPruneBefore)};
+            locationIds = getWeatherLocationIds(db, sBeforeDateSelection, pruneArgs);
+            for (Bundle location : commit.mLocations) {
+                long locationId = upsertLocation(db, ForecastCommit.getLocationValues(location));
+                locationIds.add(locationId);
+                WeatherBatch days = WeatherBatch.fromBundle(location);
+                if (days.size() == 0) {
+                    continue;
+                }
+                db.delete(WeatherContract.WeatherEntry.TABLE_NAME,
+                        sLocationIdWithStartDateSelection, new String[]{
+                                Long.toString(locationId),
+                                Long.toString(WeatherContract.normalizeDate(days.getFirstDate(), time))});
+                days.setLocationId(locationId);
+                returnCount += insertBatch(insert, days, time);
+            }
+            db.delete(WeatherContract.WeatherEntry.TABLE_NAME, sBeforeDateSelection, pruneArgs);
+            db.setTransactionSuccessful();
+        } finally {
+            insert.close();
+            db.endTransaction();
+        }
+        notifyWeatherLocations(db, locationIds);
+        return returnCount;
+    }
+
+    /**
+     * Updates the location with the same setting, or inserts it if there isn't one.
+     *
+     * @return the row ID of the location
+     */
+    private static long upsertLocation(SQLiteDatabase db, ContentValues locationValues) {
+        String[] locationSetting = new String[]{
+                locationValues.getAsString(WeatherContract.LocationEntry.COLUMN_LOCATION_SETTING)};
+        int updated = db.update(WeatherContract.LocationEntry.TABLE_NAME, locationValues,
+                sLocationSettingOnlySelection, locationSetting);
+        if (updated == 0) {
+            return db.insertOrThrow(WeatherContract.LocationEntry.TABLE_NAME, null, locationValues);
+        }
+        return DatabaseUtils.longForQuery(db,
+                "SELECT " + WeatherContract.LocationEntry._ID +
+                        " FROM " + WeatherContract.LocationEntry.TABLE_NAME +
+                        " WHERE " + sLocationSettingOnlySelection,
+                locationSetting);
+    }
+
+    @Override
+    public Bundle call(String method, String arg, Bundle extras) {
+        if (WeatherContract.METHOD_GET_QUERY_CACHE_STATS.equals(method)) {
+            return mQueryCache.getStats();
+        }
+        int rowCount;
+        if (WeatherContract.METHOD_BULK_INSERT_WEATHER.equals(method)) {
+            rowCount = bulkInsert(WeatherBatch.fromBundle(extras));
+        } else if (WeatherContract.METHOD_COMMIT_FORECAST.equals(method)) {
+            rowCount = commitForecast(ForecastCommit.fromBundle(extras));
+        } else {
+            return super.call(method, arg, extras);
+        }
+        Bundle result = new Bundle();
+        result.putInt(WeatherContract.EXTRA_ROW_COUNT, rowCount);
+        return result;
+    }
+
+    private static boolean hasWeatherInsertColumns(ContentValues values) {
+        if (values.size() != sWeatherInsertColumns.length) {
+            return false;
+        }
+        for (String column : sWeatherInsertColumns) {
+            if (!values.containsKey(column)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static void bindWeatherValues(SQLiteStatement insert, ContentValues values,
+                                          long normalizedDate) {
+        insert.clearBindings();
+        bindLong(insert, BIND_LOC_KEY,
+                values.getAsLong(WeatherContract.WeatherEntry.COLUMN_LOC_KEY));
+        insert.bindLong(BIND_DATE, normalizedDate);
+        bindLong(insert, BIND_WEATHER_ID,
+                values.getAsLong(WeatherContract.WeatherEntry.COLUMN_WEATHER_ID));
+        bindString(insert, BIND_SHORT_DESC,
+                values.getAsString(WeatherContract.WeatherEntry.COLUMN_SHORT_DESC));
+        bindDouble(insert, BIND_MIN_TEMP,
+                values.getAsDouble(WeatherContract.WeatherEntry.COLUMN_MIN_TEMP));
+        bindDouble(insert, BIND_MAX_TEMP,
+                values.getAsDouble(WeatherContract.WeatherEntry.COLUMN_MAX_TEMP));
+        bindDouble(insert, BIND_HUMIDITY,
+                values.getAsDouble(WeatherContract.WeatherEntry.COLUMN_HUMIDITY));
+        bindDouble(insert, BIND_PRESSURE,
+                values.getAsDouble(WeatherContract.WeatherEntry.COLUMN_PRESSURE));
+        bindDouble(insert, BIND_WIND_SPEED,
+                values.getAsDouble(WeatherContract.WeatherEntry.COLUMN_WIND_SPEED));
+        bindDouble(insert, BIND_DEGREES,
+                values.getAsDouble(WeatherContract.WeatherEntry.COLUMN_DEGREES));
+    }
+
+    private static void bindLong(SQLiteStatement statement, int index, Long value) {
+        if (value == null) {
+            statement.bindNull(index);
+        } else {
+            statement.bindLong(index, value);
+        }
+    }
+
+    private static void bindDouble(SQLiteStatement statement, int index, Double value) {
+        if (value == null) {
+            statement.bindNull(index);
+        } else {
+            statement.bindDouble(index, value);
+        }
+    }
+
+    private static void bindString(SQLiteStatement statement, int index, String value) {
+        if (value == null) {
+            statement.bindNull(index);
+        } else {
+            statement.bindString(index, value);
+        }
+    }
+
+    /**
+     * Like SQLiteDatabase.insert, a row that breaks a constraint is logged and reported as -1
+     * rather than failing the whole batch.
+     */
+    private static long executeInsert(SQLiteStatement insert) {
+        try {
+            return insert.executeInsert();
+        } catch (SQLException e) {
+            Log.e(LOG_TAG, "Error inserting weather row", e);
+            return -1;
+        }
+    }
+
+    /**
+     * Applies the whole batch in one transaction, so that a sync covering several locations
+     * lands all at once (or not at all) instead of as one commit per row.  Observers hear
+     * about it once it has landed, with each URI the operations touched sent only once.
+     */
+    @Override
+    public ContentProviderResult[] applyBatch(ArrayList<ContentProviderOperation> operations)
+            throws OperationApplicationException {
+        final SQLiteDatabase db = mOpenHelper.getWritableDatabase();
+        Set<Uri> notifications = new LinkedHashSet<Uri>();
+        mPendingNotifications.set(notifications);
+        ContentProviderResult[] results;
+        WeatherDbHelper.beginWriteTransaction(db);
+        try {
+            results = super.applyBatch(operations);
+            db.setTransactionSuccessful();
+        } finally {
+            db.endTransaction();
+            mPendingNotifications.remove();
+        }
+        for (Uri uri : notifications) {
+            notifyChange(uri);
+        }
+        return results;
+    }
+
+    /*
+        Weather writes are announced on the narrowest URIs that cover the rows they touched:
+        "weather/*" for each location whose forecast changed, or "weather/*/#" for a single day.
+        A notification reaches observers of that URI, of the URIs below it and of "weather" if
+        they asked for descendants, so a loader on another location no longer reloads.  Rows
+        whose location can't be found are announced on "weather" itself.
+     */
+
+    private void notifyChange(Uri uri) {
+        Set<Uri> pending = mPendingNotifications.get();
+        if (pending != null) {
+            pending.add(uri);
+        } else {
+            // Everything is committed by now, so anything reloaded from here on will see it.
+            mQueryCache.invalidate(uri);
+            CurrentConditions.invalidate();
+            getContext().getContentResolver().notifyChange(uri, null);
+        }
+    }
+
+    private void notifyWeatherDay(SQLiteDatabase db, Long locationId, Long date) {
+        String locationSetting = null;
+        if (locationId != null) {
+            Cursor cursor = db.query(WeatherContract.LocationEntry.TABLE_NAME,
+                    new String[]{WeatherContract.LocationEntry.COLUMN_LOCATION_SETTING},
+                    WeatherContract.LocationEntry._ID + " = ?",
+                    new String[]{Long.toString(locationId)}, null, null, null);
+            if (cursor.moveToFirst()) {
+                locationSetting = cursor.getString(0);
+            }
+            cursor.close();
+        }
+        if (locationSetting == null || date == null) {
+            notifyChange(WeatherContract.WeatherEntry.CONTENT_URI);
+        } else {
+            notifyChange(WeatherContract.WeatherEntry.buildWeatherLocationWithDate(
+                    locationSetting, date));
+        }
+    }
+
+    private void notifyWeatherLocations(SQLiteDatabase db, Set<Long> locationIds) {
+        if (locationIds.isEmpty()) {
+            return;
+        }
+        Cursor cursor = db.query(WeatherContract.LocationEntry.TABLE_NAME,
+                new String[]{WeatherContract.LocationEntry.COLUMN_LOCATION_SETTING},
+                WeatherContract.LocationEntry._ID + " IN (" + TextUtils.join(",", locationIds) + ")",
+                null, null, null, null);
+        int found = 0;
+        try {
+            while (cursor.moveToNext()) {
+                notifyChange(WeatherContract.WeatherEntry.buildWeatherLocation(cursor.getString(0)));
+                found++;
+            }
+        } finally {
+            cursor.close();
+        }
+        if (found < locationIds.size()) {
+            notifyChange(WeatherContract.WeatherEntry.CONTENT_URI);
+        }
+    }
+
+    /**
+     * @return the locations that own the weather rows matching the selection
+     */
+    private static Set<Long> getWeatherLocationIds(SQLiteDatabase db, String selection,
+                                                   String[] selectionArgs) {
+        Set<Long> locationIds = new HashSet<Long>();
+        Cursor cursor = db.query(true, WeatherContract.WeatherEntry.TABLE_NAME,
+                new String[]{WeatherContract.WeatherEntry.COLUMN_LOC_KEY},
+                selection, selectionArgs, null, null, null, null);
+        try {
+            while (cursor.moveToNext()) {
+                locationIds.add(cursor.getLong(0));
+            }
+        } finally {
+            cursor.close();
+        }
+        return locationIds;
+    }
+
     // You do not need to call this method. This is a method specifically to assist the testing
     // framework in running smoothly. You can read more at:
     // http://developer.android.com/reference/android/content/ContentProvider.html#shutdown()
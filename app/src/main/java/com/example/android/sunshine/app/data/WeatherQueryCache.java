@@ -0,0 +1,178 @@
+/*
+ * Copyright (C) 2015 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.sunshine.app.data;
+
+import android.annotation.TargetApi;
+import android.database.AbstractWindowedCursor;
+import android.database.Cursor;
+import android.database.CursorWindow;
+import android.database.DatabaseUtils;
+import android.net.Uri;
+import android.os.Build;
+import android.os.Bundle;
+import android.support.v4.util.LruCache;
+import android.text.TextUtils;
+
+import java.util.Map;
+
+/**
+ * The results of the provider's weather-by-location queries, copied once into a CursorWindow
+ * and kept by URI, projection and sort order.  The weather only changes when a sync writes it,
+ * so between syncs the widgets and restarted loaders get cursors over the window that is
+ * already filled instead of a new query.  Every cursor handed out holds a reference to the
+ * window, which is freed once it has left the cache and the last of them is closed.
+ *
+ * The provider calls {@link #invalidate} with each URI it notifies, after the write has been
+ * committed.  Only the results for the location in the URI are dropped; any other URI drops
+ * everything.
+ */
+@TargetApi(Build.VERSION_CODES.HONEYCOMB)
+class WeatherQueryCache {
+
+    // The cache is bounded by the number of values (rows times columns) it holds.  Two weeks of
+    // the detail projection is about 200 of them.
+    private static final int MAX_VALUES = 4096;
+
+    private final LruCache<String, Result> mResults = new LruCache<String, Result>(MAX_VALUES) {
+        @Override
+        protected int sizeOf(String key, Result result) {
+            return Math.max(1, result.mWindow.getNumRows() * result.mColumns.length);
+        }
+
+        @Override
+        protected void entryRemoved(boolean evicted, String key, Result oldValue,
+                                    Result newValue) {
+            oldValue.mWindow.close();
+        }
+    };
+
+    // Bumped by every invalidate.  A result read from SQLite is only kept if no invalidate
+    // happened while it was being read, since it may be older than the write that caused it.
+    private int mGeneration;
+
+    private static class Result {
+        final String mLocationSetting;
+        final String[] mColumns;
+        final CursorWindow mWindow;
+
+        Result(String locationSetting, String[] columns, CursorWindow window) {
+            mLocationSetting = locationSetting;
+            mColumns = columns;
+            mWindow = window;
+        }
+    }
+
+    private static class ResultCursor extends AbstractWindowedCursor {
+        private final String[] mColumns;
+
+        ResultCursor(Result result) {
+            result.mWindow.acquireReference();
+            setWindow(result.mWindow);
+            mColumns = result.mColumns;
+        }
+
+        @Override
+        public int getCount() {
+            return mWindow.getNumRows();
+        }
+
+        @Override
+        public String[] getColumnNames() {
+            return mColumns;
+        }
+    }
+
+    static String buildKey(Uri uri, String[] projection, String sortOrder) {
+        return uri + "|" + (projection == null ? "*" : TextUtils.join(",", projection))
+                + "|" + sortOrder;
+    }
+
+    /**
+     * @return a cursor over the cached result, or null if there isn't one
+     */
+    synchronized Cursor get(String key) {
+        Result result = mResults.get(key);
+        return result == null ? null : new ResultCursor(result);
+    }
+
+    synchronized int getGeneration() {
+        return mGeneration;
+    }
+
+    /**
+     * Copies {@code cursor} into a window and keeps it, unless the cache was invalidated since
+     * {@code generation} was taken.  {@code cursor} is closed unless it is returned.
+     *
+     * @return a cursor over the same rows
+     */
+    Cursor put(String key, int generation, String locationSetting, Cursor cursor) {
+        @SuppressWarnings("deprecation")
+        CursorWindow window = new CursorWindow(false);
+        DatabaseUtils.cursorFillWindow(cursor, 0, window);
+        if (window.getNumRows() != cursor.getCount()) {
+            // Too big for one window, so not worth keeping anyway.
+            window.close();
+            cursor.moveToPosition(-1);
+            return cursor;
+        }
+        Result result = new Result(locationSetting, cursor.getColumnNames(), window);
+        cursor.close();
+
+        synchronized (this) {
+            Cursor resultCursor = new ResultCursor(result);
+            if (generation == mGeneration) {
+                mResults.put(key, result);
+            } else {
+                // Only the cursor is using the window.
+                window.close();
+            }
+            return resultCursor;
+        }
+    }
+
+    /**
+     * Drops what a change to {@code uri} may have made stale.
+     */
+    synchronized void invalidate(Uri uri) {
+        mGeneration++;
+        String locationSetting = null;
+        switch (WeatherProvider.sUriMatcher.match(uri)) {
+            case WeatherProvider.WEATHER_WITH_LOCATION:
+            case WeatherProvider.WEATHER_WITH_LOCATION_AND_DATE:
+                locationSetting = WeatherContract.WeatherEntry.getLocationSettingFromUri(uri);
+                break;
+        }
+        if (locationSetting == null) {
+            mResults.evictAll();
+            return;
+        }
+        for (Map.Entry<String, Result> entry : mResults.snapshot().entrySet()) {
+            if (locationSetting.equals(entry.getValue().mLocationSetting)) {
+                mResults.remove(entry.getKey());
+            }
+        }
+    }
+
+    /**
+     * @return the hit and miss counts, under EXTRA_CACHE_HITS and EXTRA_CACHE_MISSES
+     */
+    Bundle getStats() {
+        Bundle stats = new Bundle();
+        stats.putInt(WeatherContract.EXTRA_CACHE_HITS, mResults.hitCount());
+        stats.putInt(WeatherContract.EXTRA_CACHE_MISSES, mResults.missCount());
+        return stats;
+    }
+}
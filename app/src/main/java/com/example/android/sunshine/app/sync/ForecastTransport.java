@@ -0,0 +1,47 @@
+package com.example.android.sunshine.app.sync;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.Reader;
+import java.net.URL;
+import java.util.Map;
+
+/**
+ * Fetches forecast responses for the sync adapter.  The adapter only builds the request and
+ * reads the decoded body; how the bytes get here (compression, connection reuse, or whether
+ * there is a network at all) is up to the implementation.
+ *
+ * {@link HttpForecastTransport} talks to OpenWeatherMap.  Tests can hand the adapter their own
+ * implementation to serve canned forecasts without going online.
+ */
+interface ForecastTransport {
+
+    /**
+     * A response to a forecast request.  It must be closed once the caller is done with it,
+     * whether or not the body was read, so that the connection can be released or reused.
+     */
+    interface Response extends Closeable {
+        /**
+         * @return the HTTP status code of the response
+         */
+        int getCode();
+
+        /**
+         * @return the value of the named response header, or null if it wasn't sent
+         */
+        String getHeader(String name);
+
+        /**
+         * @return the response body, already decompressed and decoded to characters
+         * @throws IOException if the body couldn't be opened
+         */
+        Reader getBody() throws IOException;
+    }
+
+    /**
+     * Sends a GET request for {@code url} with the given extra request headers.
+     *
+     * @throws IOException if no response could be obtained
+     */
+    Response get(URL url, Map<String, String> requestHeaders) throws IOException;
+}
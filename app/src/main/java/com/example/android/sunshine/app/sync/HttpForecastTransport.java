@@ -0,0 +1,158 @@
+package com.example.android.sunshine.app.sync;
+
+import android.util.Log;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.nio.charset.Charset;
+import java.nio.charset.IllegalCharsetNameException;
+import java.nio.charset.UnsupportedCharsetException;
+import java.util.Map;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.InflaterInputStream;
+
+/**
+ * The {@link ForecastTransport} used in production, built on {@link HttpURLConnection}.
+ *
+ * Forecasts are requested compressed, which cuts the payload to a fraction of its size, and
+ * decompressed here.  Connections are never disconnected after a complete response: closing
+ * the fully read stream hands the socket back to HttpURLConnection's keep-alive pool, so the
+ * next request to the same host skips the TCP (and DNS) setup.
+ */
+class HttpForecastTransport implements ForecastTransport {
+    private static final String LOG_TAG = HttpForecastTransport.class.getSimpleName();
+
+    private static final int CONNECT_TIMEOUT_MILLIS = 15 * 1000;
+    private static final int READ_TIMEOUT_MILLIS = 30 * 1000;
+
+    private static final String ENCODING_GZIP = "gzip";
+    private static final String ENCODING_DEFLATE = "deflate";
+
+    // OpenWeatherMap sends UTF-8, and JSON is UTF-8 unless told otherwise.
+    private static final Charset DEFAULT_CHARSET = Charset.forName("UTF-8");
+
+    // If this much of a body is left unread when the response is closed, drop the connection
+    // rather than read it all just to be able to reuse the socket.
+    private static final int MAX_DRAIN_BYTES = 8 * 1024;
+
+    @Override
+    public Response get(URL url, Map<String, String> requestHeaders) throws IOException {
+        HttpURLConnection connection = (HttpURLConnection) url.openConnection();
+        try {
+            connection.setRequestMethod("GET");
+            connection.setConnectTimeout(CONNECT_TIMEOUT_MILLIS);
+            connection.setReadTimeout(READ_TIMEOUT_MILLIS);
+            // Asking for an encoding ourselves turns off the platform's transparent gzip
+            // support (which not every release has), so decompression is always done below.
+            connection.setRequestProperty("Accept-Encoding", ENCODING_GZIP + ", " + ENCODING_DEFLATE);
+            for (Map.Entry<String, String> header : requestHeaders.entrySet()) {
+                connection.setRequestProperty(header.getKey(), header.getValue());
+            }
+            return new HttpResponse(connection, connection.getResponseCode());
+        } catch (IOException e) {
+            connection.disconnect();
+            throw e;
+        }
+    }
+
+    private static class HttpResponse implements Response {
+        private final HttpURLConnection mConnection;
+        private final int mCode;
+        private InputStream mRawStream;
+        private Reader mBody;
+
+        HttpResponse(HttpURLConnection connection, int code) {
+            mConnection = connection;
+            mCode = code;
+        }
+
+        @Override
+        public int getCode() {
+            return mCode;
+        }
+
+        @Override
+        public String getHeader(String name) {
+            return mConnection.getHeaderField(name);
+        }
+
+        @Override
+        public Reader getBody() throws IOException {
+            if (mBody == null) {
+                mRawStream = mConnection.getInputStream();
+                InputStream decoded = mRawStream;
+                String contentEncoding = mConnection.getContentEncoding();
+                if (ENCODING_GZIP.equalsIgnoreCase(contentEncoding)) {
+                    decoded = new GZIPInputStream(mRawStream);
+                } else if (ENCODING_DEFLATE.equalsIgnoreCase(contentEncoding)) {
+                    decoded = new InflaterInputStream(mRawStream);
+                }
+                mBody = new BufferedReader(new InputStreamReader(decoded,
+                        charsetOf(mConnection.getContentType())));
+            }
+            return mBody;
+        }
+
+        @Override
+        public void close() {
+            try {
+                if (mRawStream == null) {
+                    // Nobody read the body (a 304, say), but it still has to be consumed before
+                    // the connection can go back into the pool.
+                    mRawStream = mConnection.getInputStream();
+                }
+                if (drain(mRawStream)) {
+                    mRawStream.close();
+                    return;
+                }
+            } catch (IOException e) {
+                Log.d(LOG_TAG, "Not reusing connection", e);
+            }
+            mConnection.disconnect();
+        }
+
+        /**
+         * Reads whatever is left of {@code in}.
+         *
+         * @return true if the end of the stream was reached
+         */
+        private static boolean drain(InputStream in) throws IOException {
+            byte[] buffer = new byte[1024];
+            int drained = 0;
+            int read;
+            while ((read = in.read(buffer)) != -1) {
+                drained += read;
+                if (drained > MAX_DRAIN_BYTES) {
+                    return false;
+                }
+            }
+            return true;
+        }
+    }
+
+    /**
+     * @return the charset named in a Content-Type header, or UTF-8 if it doesn't name one we
+     * support
+     */
+    static Charset charsetOf(String contentType) {
+        if (contentType != null) {
+            for (String parameter : contentType.split(";")) {
+                parameter = parameter.trim();
+                if (parameter.regionMatches(true, 0, "charset=", 0, "charset=".length())) {
+                    String name = parameter.substring("charset=".length()).replace("\"", "");
+                    try {
+                        return Charset.forName(name);
+                    } catch (IllegalCharsetNameException | UnsupportedCharsetException e) {
+                        Log.w(LOG_TAG, "Unknown charset " + name + ", using UTF-8");
+                    }
+                }
+            }
+        }
+        return DEFAULT_CHARSET;
+    }
+}
@@ -2,16 +2,14 @@ package com.example.android.sunshine.app.sync;
 
 import android.accounts.Account;
 import android.accounts.AccountManager;
-import android.annotation.SuppressLint;
 import android.app.NotificationManager;
 import android.app.PendingIntent;
 import android.content.AbstractThreadedSyncAdapter;
 import android.content.ContentProviderClient;
 import android.content.ContentResolver;
-import android.content.ContentUris;
-import android.content.ContentValues;
 import android.content.Context;
 import android.content.Intent;
+import android.content.OperationApplicationException;
 import android.content.SharedPreferences;
 import android.content.SyncRequest;
 import android.content.SyncResult;
@@ -22,6 +20,7 @@ import android.graphics.BitmapFactory;
 import android.net.Uri;
 import android.os.Build;
 import android.os.Bundle;
+import android.os.RemoteException;
 import android.preference.PreferenceManager;
 import android.support.annotation.IntDef;
 import android.support.v4.app.NotificationCompat;
@@ -29,28 +28,39 @@ import android.support.v4.app.TaskStackBuilder;
 import android.text.format.Time;
 import android.util.Log;
 
-import com.bumptech.glide.Glide;
+import com.example.android.sunshine.app.ArtCache;
 import com.example.android.sunshine.app.BuildConfig;
 import com.example.android.sunshine.app.MainActivity;
+import com.example.android.sunshine.app.PreferenceSnapshot;
 import com.example.android.sunshine.app.R;
 import com.example.android.sunshine.app.Utility;
+import com.example.android.sunshine.app.data.CurrentConditions;
+import com.example.android.sunshine.app.data.ForecastCommit;
+import com.example.android.sunshine.app.data.WeatherBatch;
 import com.example.android.sunshine.app.data.WeatherContract;
 import com.example.android.sunshine.app.muzei.WeatherMuzeiSource;
+import com.example.android.sunshine.app.widget.WidgetUpdateScheduler;
 
-import org.json.JSONArray;
 import org.json.JSONException;
-import org.json.JSONObject;
 
-import java.io.BufferedReader;
 import java.io.IOException;
-import java.io.InputStream;
-import java.io.InputStreamReader;
+import java.io.Reader;
 import java.lang.annotation.Retention;
 import java.lang.annotation.RetentionPolicy;
 import java.net.HttpURLConnection;
 import java.net.URL;
-import java.util.Vector;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
 import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 public class SunshineSyncAdapter extends AbstractThreadedSyncAdapter {
     public final String LOG_TAG = SunshineSyncAdapter.class.getSimpleName();
@@ -63,19 +73,19 @@ public class SunshineSyncAdapter extends AbstractThreadedSyncAdapter {
     private static final long DAY_IN_MILLIS = 1000 * 60 * 60 * 24;
     private static final int WEATHER_NOTIFICATION_ID = 3004;
 
+    // The validators of the last forecast we stored are kept per location setting, in their own
+    // preferences file so that saving them doesn't wake up the listeners on the default one.
+    private static final String PREF_FORECAST_ETAG = "forecast_etag:";
+    private static final String PREF_FORECAST_LAST_MODIFIED = "forecast_last_modified:";
 
-    private static final String[] NOTIFY_WEATHER_PROJECTION = new String[] {
-            WeatherContract.WeatherEntry.COLUMN_WEATHER_ID,
-            WeatherContract.WeatherEntry.COLUMN_MAX_TEMP,
-            WeatherContract.WeatherEntry.COLUMN_MIN_TEMP,
-            WeatherContract.WeatherEntry.COLUMN_SHORT_DESC
-    };
-
-    // these indices must match the projection
-    private static final int INDEX_WEATHER_ID = 0;
-    private static final int INDEX_MAX_TEMP = 1;
-    private static final int INDEX_MIN_TEMP = 2;
-    private static final int INDEX_SHORT_DESC = 3;
+    /**
+     * Sync extra asking for every stored location to be refreshed, not just the preferred one.
+     */
+    public static final String SYNC_EXTRAS_ALL_LOCATIONS = "all_locations";
+    // How many locations, the preferred one included, a sync of every location refreshes.
+    static final int MAX_SYNCED_LOCATIONS = 5;
+    // How many forecasts are fetched at the same time when syncing several locations.
+    private static final int MAX_CONCURRENT_FETCHES = 4;
 
     @Retention(RetentionPolicy.SOURCE)
     @IntDef({LOCATION_STATUS_OK, LOCATION_STATUS_SERVER_DOWN, LOCATION_STATUS_SERVER_INVALID,  LOCATION_STATUS_UNKNOWN, LOCATION_STATUS_INVALID})
@@ -87,22 +97,168 @@ public class SunshineSyncAdapter extends AbstractThreadedSyncAdapter {
     public static final int LOCATION_STATUS_UNKNOWN = 3;
     public static final int LOCATION_STATUS_INVALID = 4;
 
+    private final ForecastTransport mTransport;
+
     public SunshineSyncAdapter(Context context, boolean autoInitialize) {
+        this(context, autoInitialize, new HttpForecastTransport());
+    }
+
+    /**
+     * Lets tests stand in for OpenWeatherMap with their own {@link ForecastTransport}.
+     */
+    SunshineSyncAdapter(Context context, boolean autoInitialize, ForecastTransport transport) {
         super(context, autoInitialize);
+        mTransport = transport;
     }
 
     @Override
     public void onPerformSync(Account account, Bundle extras, String authority, ContentProviderClient provider, SyncResult syncResult) {
         Log.d(LOG_TAG, "Starting sync");
-        String locationQuery = Utility.getPreferredLocation(getContext());
+        String preferredLocation = Utility.getPreferredLocation(getContext());
+
+        // Periodic syncs keep every location we have stored fresh.  A manual sync (the first one,
+        // or one after the location setting changed) is about the preferred location only, so it
+        // isn't held up by the others.
+        List<String> locationSettings;
+        if (extras.getBoolean(SYNC_EXTRAS_ALL_LOCATIONS)
+                || !extras.getBoolean(ContentResolver.SYNC_EXTRAS_MANUAL)) {
+            locationSettings = getStoredLocations(preferredLocation);
+        } else {
+            locationSettings = Collections.singletonList(preferredLocation);
+        }
+
+        List<LocationForecast> forecasts;
+        try {
+            forecasts = fetchForecasts(locationSettings);
+        } catch (InterruptedException e) {
+            Log.d(LOG_TAG, "Sync canceled");
+            // Let the thread that called us see the cancel too.
+            Thread.currentThread().interrupt();
+            return;
+        }
+
+        int inserted;
+        try {
+            inserted = storeForecasts(forecasts);
+        } catch (RemoteException | OperationApplicationException e) {
+            Log.e(LOG_TAG, "Error storing forecasts", e);
+            setLocationStatus(getContext(), LOCATION_STATUS_SERVER_DOWN);
+            return;
+        }
+
+        // Only remember validators for forecasts that actually made it into the database.
+        SharedPreferences.Editor validators = getValidatorPreferences(getContext()).edit();
+        for (LocationForecast forecast : forecasts) {
+            if (forecast.mDays != null) {
+                putValidators(validators, forecast);
+            }
+        }
+        validators.commit();
+
+        // The widgets, Muzei and the notification only show the preferred location, so there is
+        // nothing for them to redraw when only the other locations were refreshed.
+        if (inserted > 0 && hasNewDays(forecasts, preferredLocation)) {
+            // Read today's weather once and publish it for everything below to share.
+            CurrentConditions.load(getContext(), preferredLocation);
+            // Get the art into the caches before the list, the widgets and the notification
+            // ask for it.
+            ArtCache.prefetch(getContext(), getWeatherIds(forecasts, preferredLocation));
+            updateWidgets();
+            updateMuzei();
+            notifyWeather();
+        }
+        Log.d(LOG_TAG, "Sync Complete. " + forecasts.size() + " Locations, "
+                + inserted + " Inserted");
+
+        // The status shown to the user is about the location they are looking at.
+        for (LocationForecast forecast : forecasts) {
+            if (forecast.mLocationSetting.equals(preferredLocation)) {
+                setLocationStatus(getContext(), forecast.mStatus);
+            }
+        }
+    }
 
-        // These two need to be declared outside the try/catch
-        // so that they can be closed in the finally block.
-        HttpURLConnection urlConnection = null;
-        BufferedReader reader = null;
+    /**
+     * @return the preferred location followed by the other locations most recently added to the
+     * location table, MAX_SYNCED_LOCATIONS in all.  The table keeps every location the user ever
+     * typed in, and the ones from long ago aren't worth a request on every sync.
+     */
+    private List<String> getStoredLocations(String preferredLocation) {
+        Set<String> locationSettings = new LinkedHashSet<String>();
+        locationSettings.add(preferredLocation);
 
-        // Will contain the raw JSON response as a string.
-        String forecastJsonStr = null;
+        Cursor cursor = getContext().getContentResolver().query(
+                WeatherContract.LocationEntry.CONTENT_URI,
+                new String[]{WeatherContract.LocationEntry.COLUMN_LOCATION_SETTING},
+                null, null, WeatherContract.LocationEntry._ID + " DESC");
+        if (cursor != null) {
+            while (locationSettings.size() < MAX_SYNCED_LOCATIONS && cursor.moveToNext()) {
+                locationSettings.add(cursor.getString(0));
+            }
+            cursor.close();
+        }
+        return new ArrayList<String>(locationSettings);
+    }
+
+    /**
+     * Fetches the forecasts for all of {@code locationSettings}, at most
+     * MAX_CONCURRENT_FETCHES at a time.  Each fetch parses its response as it arrives, so the
+     * calling thread only waits for the results.
+     *
+     * @return one result per location, in the same order
+     * @throws InterruptedException if the sync was canceled while waiting
+     */
+    private List<LocationForecast> fetchForecasts(List<String> locationSettings)
+            throws InterruptedException {
+        if (locationSettings.size() == 1) {
+            // No point in spinning up a pool for a single request.
+            return Collections.singletonList(fetchForecast(locationSettings.get(0)));
+        }
+
+        List<Callable<LocationForecast>> fetches =
+                new ArrayList<Callable<LocationForecast>>(locationSettings.size());
+        for (final String locationSetting : locationSettings) {
+            fetches.add(new Callable<LocationForecast>() {
+                @Override
+                public LocationForecast call() {
+                    return fetchForecast(locationSetting);
+                }
+            });
+        }
+
+        ExecutorService pool = Executors.newFixedThreadPool(
+                Math.min(MAX_CONCURRENT_FETCHES, locationSettings.size()));
+        try {
+            List<LocationForecast> forecasts =
+                    new ArrayList<LocationForecast>(locationSettings.size());
+            List<Future<LocationForecast>> results = pool.invokeAll(fetches);
+            for (int i = 0; i < results.size(); i++) {
+                try {
+                    forecasts.add(results.get(i).get());
+                } catch (ExecutionException e) {
+                    // fetchForecast deals with everything it expects to go wrong.
+                    Log.e(LOG_TAG, "Error fetching forecast", e.getCause());
+                    LocationForecast failed = new LocationForecast(locationSettings.get(i));
+                    failed.mStatus = LOCATION_STATUS_SERVER_DOWN;
+                    forecasts.add(failed);
+                }
+            }
+            return forecasts;
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    /**
+     * Requests and parses the forecast for one location.  This doesn't touch the database
+     * beyond checking whether a conditional request makes sense, so it can run on any thread.
+     */
+    private LocationForecast fetchForecast(String locationQuery) {
+        LocationForecast forecast = new LocationForecast(locationQuery);
+
+        // This needs to be declared outside the try/catch
+        // so that it can be closed in the finally block.
+        ForecastTransport.Response response = null;
 
         String format = "json";
         String units = "metric";
@@ -130,240 +286,260 @@ public class SunshineSyncAdapter extends AbstractThreadedSyncAdapter {
 
             URL url = new URL(builtUri.toString());
 
-            // Create the request to OpenWeatherMap, and open the connection
-            urlConnection = (HttpURLConnection) url.openConnection();
-            urlConnection.setRequestMethod("GET");
-            urlConnection.connect();
-
-            // Read the input stream into a String
-            InputStream inputStream = urlConnection.getInputStream();
-            StringBuffer buffer = new StringBuffer();
-            if (inputStream == null) {
-                // Nothing to do.
-                return;
-            }
-            reader = new BufferedReader(new InputStreamReader(inputStream));
-
-            String line;
-            while ((line = reader.readLine()) != null) {
-                // Since it's JSON, adding a newline isn't necessary (it won't affect parsing)
-                // But it does make debugging a *lot* easier if you print out the completed
-                // buffer for debugging.
-                buffer.append(line + "\n");
+            // Only ask for a conditional response if we still have the forecast it would refer
+            // to; the database may have been cleared since the validators were saved.
+            Map<String, String> requestHeaders = new HashMap<String, String>();
+            if (hasForecastFor(locationQuery)) {
+                SharedPreferences validators = getValidatorPreferences(getContext());
+                String eTag = validators.getString(PREF_FORECAST_ETAG + locationQuery, null);
+                String lastModified = validators.getString(
+                        PREF_FORECAST_LAST_MODIFIED + locationQuery, null);
+                if (eTag != null) {
+                    requestHeaders.put("If-None-Match", eTag);
+                }
+                if (lastModified != null) {
+                    requestHeaders.put("If-Modified-Since", lastModified);
+                }
             }
 
-            if (buffer.length() == 0) {
-                // Stream was empty.  No point in parsing.
-                setLocationStatus(getContext(), LOCATION_STATUS_SERVER_DOWN);
-                return;
+            // Send the request to OpenWeatherMap
+            response = mTransport.get(url, requestHeaders);
+
+            switch (response.getCode()) {
+                case HttpURLConnection.HTTP_OK:
+                    break;
+                case HttpURLConnection.HTTP_NOT_MODIFIED:
+                    // What we stored last time is still current, so there is nothing to parse,
+                    // insert or tell anybody about.
+                    Log.d(LOG_TAG, "Forecast not modified for " + locationQuery);
+                    forecast.mStatus = LOCATION_STATUS_OK;
+                    return forecast;
+                default:
+                    throw new IOException("Unexpected response code " + response.getCode());
             }
-            forecastJsonStr = buffer.toString();
-            getWeatherDataFromJson(forecastJsonStr, locationQuery);
+
+            readForecast(response.getBody(), forecast);
+            forecast.mETag = response.getHeader("ETag");
+            forecast.mLastModified = response.getHeader("Last-Modified");
         } catch (IOException e) {
             Log.e(LOG_TAG, "Error ", e);
             // If the code didn't successfully get the weather data, there's no point in attempting
             // to parse it.
-            setLocationStatus(getContext(), LOCATION_STATUS_SERVER_DOWN);
+            forecast.mStatus = LOCATION_STATUS_SERVER_DOWN;
         } catch (JSONException e) {
             Log.e(LOG_TAG, e.getMessage(), e);
             e.printStackTrace();
-            setLocationStatus(getContext(), LOCATION_STATUS_SERVER_INVALID);
+            forecast.mStatus = LOCATION_STATUS_SERVER_INVALID;
         } finally {
-            if (urlConnection != null) {
-                urlConnection.disconnect();
-            }
-            if (reader != null) {
+            if (response != null) {
                 try {
-                    reader.close();
+                    response.close();
                 } catch (final IOException e) {
                     Log.e(LOG_TAG, "Error closing stream", e);
                 }
             }
         }
-        return;
+        return forecast;
     }
 
     /**
-     * Take the String representing the complete forecast in JSON Format and
-     * pull out the data we need to construct the Strings needed for the wireframes.
+     * Read the forecast in JSON Format off the stream and pull out the data we need to
+     * construct the Strings needed for the wireframes.
      *
-     * Fortunately parsing is easy:  constructor takes the JSON string and converts it
-     * into an Object hierarchy for us.
+     * The response is parsed as it arrives (see {@link ForecastJsonParser}), so each day's
+     * values go straight into the WeatherBatch we insert instead of through an intermediate
+     * String and object hierarchy.  On success the days are left in {@code forecast}.
      */
-    private void getWeatherDataFromJson(String forecastJsonStr,
-                                        String locationSetting)
-            throws JSONException {
-
-        // Now we have a String representing the complete forecast in JSON Format.
-        // Fortunately parsing is easy:  constructor takes the JSON string and converts it
-        // into an Object hierarchy for us.
-
-        // These are the names of the JSON objects that need to be extracted.
-
-        // Location information
-        final String OWM_CITY = "city";
-        final String OWM_CITY_NAME = "name";
-        final String OWM_COORD = "coord";
-
-        // Location coordinate
-        final String OWM_LATITUDE = "lat";
-        final String OWM_LONGITUDE = "lon";
-
-        // Weather information.  Each day's forecast info is an element of the "list" array.
-        final String OWM_LIST = "list";
+    private static void readForecast(Reader forecastReader, LocationForecast forecast)
+            throws IOException, JSONException {
+        final ForecastCollector collector = new ForecastCollector();
+        int code = ForecastJsonParser.parse(forecastReader, collector);
+
+        // do we have an error?
+        switch (code) {
+            case HttpURLConnection.HTTP_OK:
+                break;
+            case HttpURLConnection.HTTP_NOT_FOUND:
+                forecast.mStatus = LOCATION_STATUS_INVALID;
+                return;
+            default:
+                forecast.mStatus = LOCATION_STATUS_SERVER_DOWN;
+                return;
+        }
 
-        final String OWM_PRESSURE = "pressure";
-        final String OWM_HUMIDITY = "humidity";
-        final String OWM_WINDSPEED = "speed";
-        final String OWM_WIND_DIRECTION = "deg";
+        if (collector.mCityName == null) {
+            throw new JSONException("Forecast has no city");
+        }
+        forecast.mCityName = collector.mCityName;
+        forecast.mCityLatitude = collector.mCityLatitude;
+        forecast.mCityLongitude = collector.mCityLongitude;
+        forecast.mDays = collector.mDays;
+        forecast.mOldestDayToKeep = collector.mDayTime.setJulianDay(collector.mJulianStartDay);
+        forecast.mStatus = LOCATION_STATUS_OK;
+    }
 
-        // All temperatures are children of the "temp" object.
-        final String OWM_TEMPERATURE = "temp";
-        final String OWM_MAX = "max";
-        final String OWM_MIN = "min";
+    /**
+     * Writes every fetched forecast, along with any locations we haven't seen before, and drops
+     * the days that have gone by, all in one provider transaction with one change notification.
+     *
+     * @return the number of weather rows written
+     */
+    private int storeForecasts(List<LocationForecast> forecasts)
+            throws RemoteException, OperationApplicationException {
+        long oldestDayToKeep = Long.MAX_VALUE;
+        for (LocationForecast forecast : forecasts) {
+            if (forecast.mDays != null && forecast.mDays.size() > 0) {
+                oldestDayToKeep = Math.min(oldestDayToKeep, forecast.mOldestDayToKeep);
+            }
+        }
 
-        final String OWM_WEATHER = "weather";
-        final String OWM_DESCRIPTION = "main";
-        final String OWM_WEATHER_ID = "id";
+        ForecastCommit commit = new ForecastCommit(oldestDayToKeep);
+        for (LocationForecast forecast : forecasts) {
+            if (forecast.mDays == null || forecast.mDays.size() == 0) {
+                continue;
+            }
+            commit.addLocation(forecast.mLocationSetting, forecast.mCityName,
+                    forecast.mCityLatitude, forecast.mCityLongitude, forecast.mDays);
+        }
+        if (commit.isEmpty()) {
+            return 0;
+        }
+        return commit.commit(getContext().getContentResolver());
+    }
 
-        final String OWM_MESSAGE_CODE = "cod";
+    private static boolean hasNewDays(List<LocationForecast> forecasts, String locationSetting) {
+        for (LocationForecast forecast : forecasts) {
+            if (forecast.mLocationSetting.equals(locationSetting)) {
+                return forecast.mDays != null && forecast.mDays.size() > 0;
+            }
+        }
+        return false;
+    }
 
-        try {
-            JSONObject forecastJson = new JSONObject(forecastJsonStr);
-
-            // do we have an error?
-            if ( forecastJson.has(OWM_MESSAGE_CODE) ) {
-                int errorCode = forecastJson.getInt(OWM_MESSAGE_CODE);
-
-                switch (errorCode) {
-                    case HttpURLConnection.HTTP_OK:
-                        break;
-                    case HttpURLConnection.HTTP_NOT_FOUND:
-                        setLocationStatus(getContext(), LOCATION_STATUS_INVALID);
-                        return;
-                    default:
-                        setLocationStatus(getContext(), LOCATION_STATUS_SERVER_DOWN);
-                        return;
+    private static Set<Integer> getWeatherIds(List<LocationForecast> forecasts,
+                                              String locationSetting) {
+        Set<Integer> weatherIds = new LinkedHashSet<Integer>();
+        for (LocationForecast forecast : forecasts) {
+            if (forecast.mLocationSetting.equals(locationSetting) && forecast.mDays != null) {
+                for (int row = 0; row < forecast.mDays.size(); row++) {
+                    weatherIds.add(forecast.mDays.getWeatherId(row));
                 }
             }
+        }
+        return weatherIds;
+    }
 
-            JSONArray weatherArray = forecastJson.getJSONArray(OWM_LIST);
-
-            JSONObject cityJson = forecastJson.getJSONObject(OWM_CITY);
-            String cityName = cityJson.getString(OWM_CITY_NAME);
-
-            JSONObject cityCoord = cityJson.getJSONObject(OWM_COORD);
-            double cityLatitude = cityCoord.getDouble(OWM_LATITUDE);
-            double cityLongitude = cityCoord.getDouble(OWM_LONGITUDE);
-
-            long locationId = addLocation(locationSetting, cityName, cityLatitude, cityLongitude);
+    private static SharedPreferences getValidatorPreferences(Context context) {
+        return context.getSharedPreferences(
+                SunshineSyncAdapter.class.getSimpleName(), Context.MODE_PRIVATE);
+    }
 
-            // Insert the new weather information into the database
-            Vector<ContentValues> cVVector = new Vector<ContentValues>(weatherArray.length());
+    /**
+     * Remembers the ETag and Last-Modified headers of a forecast we just stored, so that the
+     * next sync for the same location can ask the server whether anything changed.
+     */
+    private static void putValidators(SharedPreferences.Editor editor, LocationForecast forecast) {
+        String locationSetting = forecast.mLocationSetting;
+        if (forecast.mETag != null) {
+            editor.putString(PREF_FORECAST_ETAG + locationSetting, forecast.mETag);
+        } else {
+            editor.remove(PREF_FORECAST_ETAG + locationSetting);
+        }
+        if (forecast.mLastModified != null) {
+            editor.putString(PREF_FORECAST_LAST_MODIFIED + locationSetting, forecast.mLastModified);
+        } else {
+            editor.remove(PREF_FORECAST_LAST_MODIFIED + locationSetting);
+        }
+    }
 
-            // OWM returns daily forecasts based upon the local time of the city that is being
-            // asked for, which means that we need to know the GMT offset to translate this data
-            // properly.
+    /**
+     * @return true if the database holds forecast data for the location from today onwards
+     */
+    private boolean hasForecastFor(String locationSetting) {
+        Uri weatherUri = WeatherContract.WeatherEntry.buildWeatherLocationWithStartDate(
+                locationSetting, System.currentTimeMillis());
+        Cursor cursor = getContext().getContentResolver().query(weatherUri,
+                new String[]{WeatherContract.WeatherEntry.COLUMN_DATE}, null, null, null);
+        if (cursor == null) {
+            return false;
+        }
+        boolean hasForecast = cursor.moveToFirst();
+        cursor.close();
+        return hasForecast;
+    }
 
-            // Since this data is also sent in-order and the first day is always the
-            // current day, we're going to take advantage of that to get a nice
-            // normalized UTC date for all of our weather.
+    /**
+     * What fetching one location's forecast came to.  {@link #mDays} stays null unless a new
+     * forecast was read; a 304 or a failure leaves nothing to store.
+     */
+    private static class LocationForecast {
+        final String mLocationSetting;
+        @LocationStatus int mStatus = LOCATION_STATUS_UNKNOWN;
+        String mCityName;
+        double mCityLatitude;
+        double mCityLongitude;
+        WeatherBatch mDays;
+        long mOldestDayToKeep;
+        String mETag;
+        String mLastModified;
+
+        LocationForecast(String locationSetting) {
+            mLocationSetting = locationSetting;
+        }
+    }
 
+    /**
+     * Gathers what {@link ForecastJsonParser} reads into the batch we hand to the provider.
+     * The location row id isn't known until the commit, so the provider fills it in.
+     */
+    private static class ForecastCollector implements ForecastJsonParser.Callback {
+        final WeatherBatch mDays = new WeatherBatch(14);
+        String mCityName;
+        double mCityLatitude;
+        double mCityLongitude;
+
+        // OWM returns daily forecasts based upon the local time of the city that is being
+        // asked for, which means that we need to know the GMT offset to translate this data
+        // properly.
+
+        // Since this data is also sent in-order and the first day is always the
+        // current day, we're going to take advantage of that to get a nice
+        // normalized UTC date for all of our weather.
+        final int mJulianStartDay;
+        final Time mDayTime;
+
+        ForecastCollector() {
             Time dayTime = new Time();
             dayTime.setToNow();
 
             // we start at the day returned by local time. Otherwise this is a mess.
-            int julianStartDay = Time.getJulianDay(System.currentTimeMillis(), dayTime.gmtoff);
+            mJulianStartDay = Time.getJulianDay(System.currentTimeMillis(), dayTime.gmtoff);
 
             // now we work exclusively in UTC
-            dayTime = new Time();
-
-            for(int i = 0; i < weatherArray.length(); i++) {
-                // These are the values that will be collected.
-                long dateTime;
-                double pressure;
-                int humidity;
-                double windSpeed;
-                double windDirection;
-
-                double high;
-                double low;
-
-                String description;
-                int weatherId;
-
-                // Get the JSON object representing the day
-                JSONObject dayForecast = weatherArray.getJSONObject(i);
-
-                // Cheating to convert this to UTC time, which is what we want anyhow
-                dateTime = dayTime.setJulianDay(julianStartDay+i);
-
-                pressure = dayForecast.getDouble(OWM_PRESSURE);
-                humidity = dayForecast.getInt(OWM_HUMIDITY);
-                windSpeed = dayForecast.getDouble(OWM_WINDSPEED);
-                windDirection = dayForecast.getDouble(OWM_WIND_DIRECTION);
-
-                // Description is in a child array called "weather", which is 1 element long.
-                // That element also contains a weather code.
-                JSONObject weatherObject =
-                        dayForecast.getJSONArray(OWM_WEATHER).getJSONObject(0);
-                description = weatherObject.getString(OWM_DESCRIPTION);
-                weatherId = weatherObject.getInt(OWM_WEATHER_ID);
-
-                // Temperatures are in a child object called "temp".  Try not to name variables
-                // "temp" when working with temperature.  It confuses everybody.
-                JSONObject temperatureObject = dayForecast.getJSONObject(OWM_TEMPERATURE);
-                high = temperatureObject.getDouble(OWM_MAX);
-                low = temperatureObject.getDouble(OWM_MIN);
-
-                ContentValues weatherValues = new ContentValues();
-
-                weatherValues.put(WeatherContract.WeatherEntry.COLUMN_LOC_KEY, locationId);
-                weatherValues.put(WeatherContract.WeatherEntry.COLUMN_DATE, dateTime);
-                weatherValues.put(WeatherContract.WeatherEntry.COLUMN_HUMIDITY, humidity);
-                weatherValues.put(WeatherContract.WeatherEntry.COLUMN_PRESSURE, pressure);
-                weatherValues.put(WeatherContract.WeatherEntry.COLUMN_WIND_SPEED, windSpeed);
-                weatherValues.put(WeatherContract.WeatherEntry.COLUMN_DEGREES, windDirection);
-                weatherValues.put(WeatherContract.WeatherEntry.COLUMN_MAX_TEMP, high);
-                weatherValues.put(WeatherContract.WeatherEntry.COLUMN_MIN_TEMP, low);
-                weatherValues.put(WeatherContract.WeatherEntry.COLUMN_SHORT_DESC, description);
-                weatherValues.put(WeatherContract.WeatherEntry.COLUMN_WEATHER_ID, weatherId);
-
-                cVVector.add(weatherValues);
-            }
+            mDayTime = new Time();
+        }
 
-            int inserted = 0;
-            // add to database
-            if ( cVVector.size() > 0 ) {
-                ContentValues[] cvArray = new ContentValues[cVVector.size()];
-                cVVector.toArray(cvArray);
-                getContext().getContentResolver().bulkInsert(WeatherContract.WeatherEntry.CONTENT_URI, cvArray);
-
-                // delete old data so we don't build up an endless history
-                getContext().getContentResolver().delete(WeatherContract.WeatherEntry.CONTENT_URI,
-                        WeatherContract.WeatherEntry.COLUMN_DATE + " <= ?",
-                        new String[] {Long.toString(dayTime.setJulianDay(julianStartDay-1))});
-
-                updateWidgets();
-                updateMuzei();
-                notifyWeather();
-            }
-            Log.d(LOG_TAG, "Sync Complete. " + cVVector.size() + " Inserted");
-            setLocationStatus(getContext(), LOCATION_STATUS_OK);
+        @Override
+        public void onCity(String cityName, double lat, double lon) {
+            mCityName = cityName;
+            mCityLatitude = lat;
+            mCityLongitude = lon;
+        }
 
-        } catch (JSONException e) {
-            Log.e(LOG_TAG, e.getMessage(), e);
-            e.printStackTrace();
-            setLocationStatus(getContext(), LOCATION_STATUS_SERVER_INVALID);
+        @Override
+        public void onDay(int dayIndex, double pressure, int humidity, double windSpeed,
+                          double windDirection, double high, double low,
+                          String description, int weatherId) {
+            // Cheating to convert this to UTC time, which is what we want anyhow
+            long dateTime = mDayTime.setJulianDay(mJulianStartDay + dayIndex);
+
+            mDays.add(0, dateTime, weatherId, description, low, high, humidity, pressure,
+                    windSpeed, windDirection);
         }
     }
 
     private void updateWidgets() {
-        Context context = getContext();
-        // Setting the package ensures that only components in our app will receive the broadcast
-        Intent dataUpdatedIntent = new Intent(ACTION_DATA_UPDATED)
-                .setPackage(context.getPackageName());
-        context.sendBroadcast(dataUpdatedIntent);
+        WidgetUpdateScheduler.scheduleUpdate(getContext());
     }
 
     private void updateMuzei() {
@@ -393,44 +569,24 @@ public class SunshineSyncAdapter extends AbstractThreadedSyncAdapter {
                 // Last sync was more than 1 day ago, let's send a notification with the weather.
                 String locationQuery = Utility.getPreferredLocation(context);
 
-                Uri weatherUri = WeatherContract.WeatherEntry.buildWeatherLocationWithDate(locationQuery, System.currentTimeMillis());
+                // the sync has just published today's weather
+                CurrentConditions conditions = CurrentConditions.get(context, locationQuery);
 
-                // we'll query our contentProvider, as always
-                Cursor cursor = context.getContentResolver().query(weatherUri, NOTIFY_WEATHER_PROJECTION, null, null, null);
-
-                if (cursor.moveToFirst()) {
-                    int weatherId = cursor.getInt(INDEX_WEATHER_ID);
-                    double high = cursor.getDouble(INDEX_MAX_TEMP);
-                    double low = cursor.getDouble(INDEX_MIN_TEMP);
-                    String desc = cursor.getString(INDEX_SHORT_DESC);
+                if (conditions != null) {
+                    int weatherId = conditions.getWeatherId();
+                    double high = conditions.getMaxTemp();
+                    double low = conditions.getMinTemp();
+                    String desc = conditions.getShortDesc();
 
                     int iconId = Utility.getIconResourceForWeatherCondition(weatherId);
                     Resources resources = context.getResources();
                     int artResourceId = Utility.getArtResourceForWeatherCondition(weatherId);
                     String artUrl = Utility.getArtUrlForWeatherCondition(context, weatherId);
 
-                    // On Honeycomb and higher devices, we can retrieve the size of the large icon
-                    // Prior to that, we use a fixed size
-                    @SuppressLint("InlinedApi")
-                    int largeIconWidth = Build.VERSION.SDK_INT >= Build.VERSION_CODES.HONEYCOMB
-                            ? resources.getDimensionPixelSize(android.R.dimen.notification_large_icon_width)
-                            : resources.getDimensionPixelSize(R.dimen.notification_large_icon_default);
-                    @SuppressLint("InlinedApi")
-                    int largeIconHeight = Build.VERSION.SDK_INT >= Build.VERSION_CODES.HONEYCOMB
-                            ? resources.getDimensionPixelSize(android.R.dimen.notification_large_icon_height)
-                            : resources.getDimensionPixelSize(R.dimen.notification_large_icon_default);
-
-                    // Retrieve the large icon
-                    Bitmap largeIcon;
-                    try {
-                        largeIcon = Glide.with(context)
-                                .load(artUrl)
-                                .asBitmap()
-                                .error(artResourceId)
-                                .fitCenter()
-                                .into(largeIconWidth, largeIconHeight).get();
-                    } catch (InterruptedException | ExecutionException e) {
-                        Log.e(LOG_TAG, "Error retrieving large icon from " + artUrl, e);
+                    // Retrieve the large icon, which the sync has just prefetched
+                    Bitmap largeIcon = artUrl == null ? null
+                            : ArtCache.load(context, artUrl, ArtCache.getNotificationSize(context));
+                    if (largeIcon == null) {
                         largeIcon = BitmapFactory.decodeResource(resources, artResourceId);
                     }
                     String title = context.getString(R.string.app_name);
@@ -478,61 +634,10 @@ public class SunshineSyncAdapter extends AbstractThreadedSyncAdapter {
                     editor.putLong(lastNotificationKey, System.currentTimeMillis());
                     editor.commit();
                 }
-                cursor.close();
             }
         }
     }
 
-    /**
-     * Helper method to handle insertion of a new location in the weather database.
-     *
-     * @param locationSetting The location string used to request updates from the server.
-     * @param cityName A human-readable city name, e.g "Mountain View"
-     * @param lat the latitude of the city
-     * @param lon the longitude of the city
-     * @return the row ID of the added location.
-     */
-    long addLocation(String locationSetting, String cityName, double lat, double lon) {
-        long locationId;
-
-        // First, check if the location with this city name exists in the db
-        Cursor locationCursor = getContext().getContentResolver().query(
-                WeatherContract.LocationEntry.CONTENT_URI,
-                new String[]{WeatherContract.LocationEntry._ID},
-                WeatherContract.LocationEntry.COLUMN_LOCATION_SETTING + " = ?",
-                new String[]{locationSetting},
-                null);
-
-        if (locationCursor.moveToFirst()) {
-            int locationIdIndex = locationCursor.getColumnIndex(WeatherContract.LocationEntry._ID);
-            locationId = locationCursor.getLong(locationIdIndex);
-        } else {
-            // Now that the content provider is set up, inserting rows of data is pretty simple.
-            // First create a ContentValues object to hold the data you want to insert.
-            ContentValues locationValues = new ContentValues();
-
-            // Then add the data, along with the corresponding name of the data type,
-            // so the content provider knows what kind of value is being inserted.
-            locationValues.put(WeatherContract.LocationEntry.COLUMN_CITY_NAME, cityName);
-            locationValues.put(WeatherContract.LocationEntry.COLUMN_LOCATION_SETTING, locationSetting);
-            locationValues.put(WeatherContract.LocationEntry.COLUMN_COORD_LAT, lat);
-            locationValues.put(WeatherContract.LocationEntry.COLUMN_COORD_LONG, lon);
-
-            // Finally, insert location data into the database.
-            Uri insertedUri = getContext().getContentResolver().insert(
-                    WeatherContract.LocationEntry.CONTENT_URI,
-                    locationValues
-            );
-
-            // The resulting URI contains the ID for the row.  Extract the locationId from the Uri.
-            locationId = ContentUris.parseId(insertedUri);
-        }
-
-        locationCursor.close();
-        // Wait, that worked?  Yes!
-        return locationId;
-    }
-
     /**
      * Helper method to schedule the sync adapter periodic execution
      */
@@ -631,9 +736,6 @@ public class SunshineSyncAdapter extends AbstractThreadedSyncAdapter {
      * @param locationStatus The IntDef value to set
      */
     static private void setLocationStatus(Context c, @LocationStatus int locationStatus){
-        SharedPreferences sp = PreferenceManager.getDefaultSharedPreferences(c);
-        SharedPreferences.Editor spe = sp.edit();
-        spe.putInt(c.getString(R.string.pref_location_status_key), locationStatus);
-        spe.commit();
+        PreferenceSnapshot.putLocationStatus(c, locationStatus, true);
     }
 }
\ No newline at end of file
@@ -7,9 +7,7 @@ import android.util.Log;
 
 import com.example.android.sunshine.app.Utility;
 import com.example.android.sunshine.app.data.WeatherContract;
-import com.google.android.gms.common.api.GoogleApiClient;
 import com.google.android.gms.wearable.MessageEvent;
-import com.google.android.gms.wearable.Wearable;
 import com.google.android.gms.wearable.WearableListenerService;
 
 /**
@@ -17,7 +15,6 @@ import com.google.android.gms.wearable.WearableListenerService;
  */
 public class ListenerService extends WearableListenerService{
 
-    GoogleApiClient googleApiClient;
     Context mContext;
 
     private String LOG_TAG = "ListenerService";
@@ -25,17 +22,13 @@ public class ListenerService extends WearableListenerService{
     @Override
     public void onCreate(){
         super.onCreate();
-        googleApiClient = new GoogleApiClient.Builder(this)
-                .addApi(Wearable.API)
-                .build();
-        googleApiClient.connect();
         mContext = getApplicationContext();
     }
 
     @Override
     public void onMessageReceived(MessageEvent messageEvent) {
         Log.i(LOG_TAG, "message received");
-        new SendMessageWearable(mContext, googleApiClient).execute();
+        WearableDispatcher.getInstance(mContext).requestUpdate();
 
     }
 }
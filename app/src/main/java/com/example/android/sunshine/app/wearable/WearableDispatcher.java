@@ -0,0 +1,222 @@
+package com.example.android.sunshine.app.wearable;
+
+import android.content.Context;
+import android.database.Cursor;
+import android.net.Uri;
+import android.os.Bundle;
+import android.os.Handler;
+import android.os.HandlerThread;
+import android.os.Message;
+import android.util.Log;
+
+import com.example.android.sunshine.app.MainActivity;
+import com.example.android.sunshine.app.Utility;
+import com.example.android.sunshine.app.data.WeatherContract.WeatherEntry;
+import com.example.android.sunshine.shared.DayFormatter;
+import com.example.android.sunshine.shared.WeatherMessage;
+import com.google.android.gms.common.ConnectionResult;
+import com.google.android.gms.common.api.GoogleApiClient;
+import com.google.android.gms.wearable.MessageApi;
+import com.google.android.gms.wearable.Node;
+import com.google.android.gms.wearable.NodeApi;
+import com.google.android.gms.wearable.Wearable;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.TimeZone;
+
+/**
+ * Sends the forecast to the connected watches, from one long-lived connection and one
+ * background thread for the whole app.
+ *
+ * {@link #requestUpdate} can be called as often as anyone likes: requests that come in while an
+ * update is waiting to go out are folded into it, so a burst of them sends the watches the
+ * forecast once.  Updates wait for the connection instead of polling it, and the connected
+ * watches are looked up once and remembered until one connects or disconnects.
+ */
+public final class WearableDispatcher implements GoogleApiClient.ConnectionCallbacks,
+        GoogleApiClient.OnConnectionFailedListener, NodeApi.NodeListener {
+
+    private static final String LOG_TAG = WearableDispatcher.class.getSimpleName();
+
+    // How long an update waits for more requests to fold in.
+    private static final long SEND_DELAY_MILLIS = 250;
+
+    private static final int MSG_SEND = 0;
+    private static final int MSG_CONNECTED = 1;
+    private static final int MSG_NODES_CHANGED = 2;
+
+    private static final String[] FORECAST_COLUMNS = {
+            WeatherEntry.COLUMN_DATE,
+            WeatherEntry.COLUMN_WEATHER_ID,
+            WeatherEntry.COLUMN_MAX_TEMP,
+            WeatherEntry.COLUMN_MIN_TEMP
+    };
+    // these indices must match the projection
+    private static final int INDEX_DATE = 0;
+    private static final int INDEX_WEATHER_ID = 1;
+    private static final int INDEX_MAX_TEMP = 2;
+    private static final int INDEX_MIN_TEMP = 3;
+
+    private static WearableDispatcher sInstance;
+
+    private final Context mContext;
+    private final GoogleApiClient mGoogleApiClient;
+    private final Handler mHandler;
+
+    // Only touched on the dispatcher's thread.
+    private boolean mUpdatePending;
+    private List<String> mNodeIds;
+
+    public static synchronized WearableDispatcher getInstance(Context context) {
+        if (sInstance == null) {
+            sInstance = new WearableDispatcher(context.getApplicationContext());
+        }
+        return sInstance;
+    }
+
+    private WearableDispatcher(Context context) {
+        mContext = context;
+        HandlerThread thread = new HandlerThread(LOG_TAG);
+        thread.start();
+        mHandler = new Handler(thread.getLooper()) {
+            @Override
+            public void handleMessage(Message msg) {
+                switch (msg.what) {
+                    case MSG_SEND:
+                        mUpdatePending = true;
+                        sendIfConnected();
+                        break;
+                    case MSG_CONNECTED:
+                        sendIfConnected();
+                        break;
+                    case MSG_NODES_CHANGED:
+                        mNodeIds = null;
+                        break;
+                }
+            }
+        };
+        mGoogleApiClient = new GoogleApiClient.Builder(context)
+                .addConnectionCallbacks(this)
+                .addOnConnectionFailedListener(this)
+                .addApi(Wearable.API)
+                .build();
+        mGoogleApiClient.connect();
+    }
+
+    /**
+     * Sends the watches the current forecast, shortly and together with any other requests
+     * made before then.
+     */
+    public void requestUpdate() {
+        if (!mHandler.hasMessages(MSG_SEND)) {
+            mHandler.sendEmptyMessageDelayed(MSG_SEND, SEND_DELAY_MILLIS);
+        }
+    }
+
+    private void sendIfConnected() {
+        if (!mUpdatePending) {
+            return;
+        }
+        if (!mGoogleApiClient.isConnected()) {
+            // onConnected sends it.
+            if (!mGoogleApiClient.isConnecting()) {
+                mGoogleApiClient.connect();
+            }
+            return;
+        }
+        mUpdatePending = false;
+
+        byte[] message = getWeather();
+        if (message == null) {
+            Log.d(LOG_TAG, "No weather yet... wearable not updated");
+            return;
+        }
+        for (String nodeId : getNodeIds()) {
+            MessageApi.SendMessageResult result = Wearable.MessageApi.sendMessage(
+                    mGoogleApiClient, nodeId, MainActivity.VOICE_TRANSCRIPTION_MESSAGE_PATH,
+                    message).await();
+            if (!result.getStatus().isSuccess()) {
+                Log.i(LOG_TAG, "sending to " + nodeId + " failed :: " + result.getStatus());
+                // The watch may have gone; look again next time.
+                mNodeIds = null;
+            }
+        }
+    }
+
+    private List<String> getNodeIds() {
+        if (mNodeIds == null) {
+            NodeApi.GetConnectedNodesResult nodes =
+                    Wearable.NodeApi.getConnectedNodes(mGoogleApiClient).await();
+            List<String> nodeIds = new ArrayList<String>();
+            for (Node node : nodes.getNodes()) {
+                nodeIds.add(node.getId());
+            }
+            Log.i(LOG_TAG, "connected nodes :: " + nodeIds.size());
+            mNodeIds = nodeIds;
+        }
+        return mNodeIds;
+    }
+
+    @Override
+    public void onConnected(Bundle bundle) {
+        Wearable.NodeApi.addListener(mGoogleApiClient, this);
+        // What was connected before may not be anymore.
+        mHandler.sendEmptyMessage(MSG_NODES_CHANGED);
+        mHandler.sendEmptyMessage(MSG_CONNECTED);
+    }
+
+    @Override
+    public void onConnectionSuspended(int i) {
+        // The client reconnects by itself, and onConnected picks up from there.
+        Log.i(LOG_TAG, "connection suspended");
+    }
+
+    @Override
+    public void onConnectionFailed(ConnectionResult connectionResult) {
+        // Updates stay pending until the next request tries to connect again.
+        Log.i(LOG_TAG, "connection failed :: " + connectionResult.toString());
+    }
+
+    @Override
+    public void onPeerConnected(Node node) {
+        mHandler.sendEmptyMessage(MSG_NODES_CHANGED);
+    }
+
+    @Override
+    public void onPeerDisconnected(Node node) {
+        mHandler.sendEmptyMessage(MSG_NODES_CHANGED);
+    }
+
+    /**
+     * @return the forecast from today on, as a {@link WeatherMessage}, or null if there is none
+     */
+    private byte[] getWeather() {
+        String location = Utility.getPreferredLocation(mContext);
+        long now = System.currentTimeMillis();
+        Uri weatherForLocationUri = WeatherEntry.buildWeatherLocationWithStartDate(location, now);
+        Cursor cursor = mContext.getContentResolver().query(weatherForLocationUri,
+                FORECAST_COLUMNS, null, null, WeatherEntry.COLUMN_DATE + " ASC");
+        if (cursor == null) {
+            return null;
+        }
+
+        WeatherMessage message = new WeatherMessage();
+        message.setTimestamp(now);
+        message.setMetric(Utility.isMetric(mContext));
+        TimeZone timeZone = TimeZone.getDefault();
+        try {
+            while (cursor.moveToNext()) {
+                long date = cursor.getLong(INDEX_DATE);
+                int julianDay = DayFormatter.getJulianDay(date, timeZone.getOffset(date));
+                if (!message.addDay(julianDay, cursor.getInt(INDEX_WEATHER_ID),
+                        cursor.getDouble(INDEX_MAX_TEMP), cursor.getDouble(INDEX_MIN_TEMP))) {
+                    break;
+                }
+            }
+        } finally {
+            cursor.close();
+        }
+        return message.getDayCount() == 0 ? null : message.encode();
+    }
+}
@@ -0,0 +1,111 @@
+/*
+ * Copyright (C) 2015 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.sunshine.app.widget;
+
+import android.annotation.TargetApi;
+import android.app.IntentService;
+import android.appwidget.AppWidgetManager;
+import android.content.ComponentName;
+import android.content.Intent;
+import android.database.Cursor;
+import android.net.Uri;
+import android.os.Build;
+
+import com.example.android.sunshine.app.R;
+import com.example.android.sunshine.app.Utility;
+import com.example.android.sunshine.app.data.WeatherContract;
+
+import java.util.Arrays;
+
+/**
+ * IntentService which tells the Detail widgets to reload their list, if what the list would
+ * show has changed since they were last told
+ */
+@TargetApi(Build.VERSION_CODES.HONEYCOMB)
+public class DetailWidgetIntentService extends IntentService {
+    public DetailWidgetIntentService() {
+        super("DetailWidgetIntentService");
+    }
+
+    @Override
+    protected void onHandleIntent(Intent intent) {
+        AppWidgetManager appWidgetManager = AppWidgetManager.getInstance(this);
+        int[] appWidgetIds = appWidgetManager.getAppWidgetIds(new ComponentName(this,
+                DetailWidgetProvider.class));
+        if (appWidgetIds.length == 0) {
+            return;
+        }
+
+        int contentHash = getContentHash();
+        int[] changedIds = new int[appWidgetIds.length];
+        int changedCount = 0;
+        for (int appWidgetId : appWidgetIds) {
+            if (WidgetUpdateScheduler.hasChanged(appWidgetId, contentHash)) {
+                changedIds[changedCount++] = appWidgetId;
+            }
+        }
+        if (changedCount > 0) {
+            appWidgetManager.notifyAppWidgetViewDataChanged(
+                    Arrays.copyOf(changedIds, changedCount), R.id.widget_list);
+        }
+    }
+
+    /*
+        Hashes the same strings and images DetailWidgetRemoteViewsService would put in the rows,
+        so that anything that shows up differently (the units, the art pack, "Tomorrow" turning
+        into "Today") counts as a change.
+     */
+    private int getContentHash() {
+        String location = Utility.getPreferredLocation(this);
+        Uri weatherForLocationUri = WeatherContract.WeatherEntry
+                .buildWeatherLocationWithStartDate(location, System.currentTimeMillis());
+        Cursor data = getContentResolver().query(weatherForLocationUri,
+                DetailWidgetRemoteViewsService.FORECAST_COLUMNS,
+                null,
+                null,
+                WeatherContract.WeatherEntry.COLUMN_DATE + " ASC");
+        int hash = location.hashCode();
+        if (data == null) {
+            return hash;
+        }
+        try {
+            boolean usingLocalGraphics = Utility.usingLocalGraphics(this);
+            while (data.moveToNext()) {
+                int weatherId = data.getInt(
+                        DetailWidgetRemoteViewsService.INDEX_WEATHER_CONDITION_ID);
+                long dateInMillis = data.getLong(DetailWidgetRemoteViewsService.INDEX_WEATHER_DATE);
+                double maxTemp = data.getDouble(
+                        DetailWidgetRemoteViewsService.INDEX_WEATHER_MAX_TEMP);
+                double minTemp = data.getDouble(
+                        DetailWidgetRemoteViewsService.INDEX_WEATHER_MIN_TEMP);
+                Object art = usingLocalGraphics
+                        ? Integer.valueOf(Utility.getIconResourceForWeatherCondition(weatherId))
+                        : Utility.getArtUrlForWeatherCondition(this, weatherId);
+                hash = 31 * hash + Arrays.hashCode(new Object[] {
+                        dateInMillis,
+                        Utility.getFriendlyDayString(this, dateInMillis, false),
+                        art,
+                        data.getString(DetailWidgetRemoteViewsService.INDEX_WEATHER_DESC),
+                        Utility.formatTemperature(this, maxTemp),
+                        Utility.formatTemperature(this, minTemp)
+                });
+            }
+        } finally {
+            data.close();
+        }
+        return hash;
+    }
+}
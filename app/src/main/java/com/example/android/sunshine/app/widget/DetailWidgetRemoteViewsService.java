@@ -7,18 +7,17 @@ import android.graphics.Bitmap;
 import android.net.Uri;
 import android.os.Binder;
 import android.os.Build;
-import android.util.Log;
 import android.widget.AdapterView;
 import android.widget.RemoteViews;
 import android.widget.RemoteViewsService;
 
-import com.bumptech.glide.Glide;
-import com.bumptech.glide.request.target.Target;
+import com.example.android.sunshine.app.ArtCache;
 import com.example.android.sunshine.app.R;
 import com.example.android.sunshine.app.Utility;
 import com.example.android.sunshine.app.data.WeatherContract;
 
-import java.util.concurrent.ExecutionException;
+import java.util.HashSet;
+import java.util.Set;
 
 /**
  * RemoteViewsService controlling the data being shown in the scrollable weather detail widget
@@ -26,7 +25,7 @@ import java.util.concurrent.ExecutionException;
 @TargetApi(Build.VERSION_CODES.HONEYCOMB)
 public class DetailWidgetRemoteViewsService extends RemoteViewsService {
     public final String LOG_TAG = DetailWidgetRemoteViewsService.class.getSimpleName();
-    private static final String[] FORECAST_COLUMNS = {
+    static final String[] FORECAST_COLUMNS = {
             WeatherContract.WeatherEntry.TABLE_NAME + "." + WeatherContract.WeatherEntry._ID,
             WeatherContract.WeatherEntry.COLUMN_DATE,
             WeatherContract.WeatherEntry.COLUMN_WEATHER_ID,
@@ -46,10 +45,11 @@ public class DetailWidgetRemoteViewsService extends RemoteViewsService {
     public RemoteViewsFactory onGetViewFactory(Intent intent) {
         return new RemoteViewsFactory() {
             private Cursor data = null;
+            private int artSize;
 
             @Override
             public void onCreate() {
-                // Nothing to do
+                artSize = ArtCache.getListSize(DetailWidgetRemoteViewsService.this);
             }
 
             @Override
@@ -71,6 +71,25 @@ public class DetailWidgetRemoteViewsService extends RemoteViewsService {
                         null,
                         WeatherContract.WeatherEntry.COLUMN_DATE + " ASC");
                 Binder.restoreCallingIdentity(identityToken);
+                loadArt();
+            }
+
+            /*
+                Decodes the art for every condition in the forecast once, at the size the widget
+                shows it, while the host is still waiting for the data set.  The bitmaps are
+                shared by all the rows and all the widgets, and are small enough to send to the
+                host with every row.
+             */
+            private void loadArt() {
+                if (data == null
+                        || Utility.usingLocalGraphics(DetailWidgetRemoteViewsService.this)) {
+                    return;
+                }
+                Set<Integer> weatherIds = new HashSet<Integer>();
+                for (int position = 0; data.moveToPosition(position); position++) {
+                    weatherIds.add(data.getInt(INDEX_WEATHER_CONDITION_ID));
+                }
+                ArtCache.loadAll(DetailWidgetRemoteViewsService.this, weatherIds, artSize);
             }
 
             @Override
@@ -100,14 +119,13 @@ public class DetailWidgetRemoteViewsService extends RemoteViewsService {
                 if ( !Utility.usingLocalGraphics(DetailWidgetRemoteViewsService.this) ) {
                     String weatherArtResourceUrl = Utility.getArtUrlForWeatherCondition(
                             DetailWidgetRemoteViewsService.this, weatherId);
-                    try {
-                        weatherArtImage = Glide.with(DetailWidgetRemoteViewsService.this)
-                                .load(weatherArtResourceUrl)
-                                .asBitmap()
-                                .error(weatherArtResourceId)
-                                .into(Target.SIZE_ORIGINAL, Target.SIZE_ORIGINAL).get();
-                    } catch (InterruptedException | ExecutionException e) {
-                        Log.e(LOG_TAG, "Error retrieving large icon from " + weatherArtResourceUrl, e);
+                    if (weatherArtResourceUrl != null) {
+                        weatherArtImage = ArtCache.get(weatherArtResourceUrl, artSize);
+                        if (weatherArtImage == null) {
+                            // Only if the art was evicted since onDataSetChanged.
+                            weatherArtImage = ArtCache.load(DetailWidgetRemoteViewsService.this,
+                                    weatherArtResourceUrl, artSize);
+                        }
                     }
                 }
                 String description = data.getString(INDEX_WEATHER_DESC);
@@ -34,6 +34,8 @@ public class TodayWidgetProvider extends AppWidgetProvider {
 
     @Override
     public void onUpdate(Context context, AppWidgetManager appWidgetManager, int[] appWidgetIds) {
+        // The host wants these redrawn, whether or not the weather changed
+        WidgetUpdateScheduler.forget(appWidgetIds);
         context.startService(new Intent(context, TodayWidgetIntentService.class));
     }
 
@@ -43,6 +45,11 @@ public class TodayWidgetProvider extends AppWidgetProvider {
         context.startService(new Intent(context, TodayWidgetIntentService.class));
     }
 
+    @Override
+    public void onDeleted(Context context, int[] appWidgetIds) {
+        WidgetUpdateScheduler.forget(appWidgetIds);
+    }
+
     @Override
     public void onReceive(@NonNull Context context, @NonNull Intent intent) {
         super.onReceive(context, intent);
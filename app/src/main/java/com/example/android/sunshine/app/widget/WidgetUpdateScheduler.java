@@ -0,0 +1,102 @@
+/*
+ * Copyright (C) 2015 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.sunshine.app.widget;
+
+import android.annotation.TargetApi;
+import android.app.AlarmManager;
+import android.app.PendingIntent;
+import android.content.Context;
+import android.content.Intent;
+import android.os.Build;
+import android.os.SystemClock;
+import android.util.SparseIntArray;
+
+import com.example.android.sunshine.app.sync.SunshineSyncAdapter;
+
+/**
+ * Tells the widgets that the weather data changed, once for a whole burst of changes, and
+ * remembers what each widget was last sent so that widgets whose content is the same are left
+ * alone.
+ *
+ * The update is an alarm that fires {@link SunshineSyncAdapter#ACTION_DATA_UPDATED} a moment
+ * after the last change.  Scheduling again before it fires moves the same alarm instead of
+ * adding another one, so e.g. changing the units while a sync is finishing redraws the widgets
+ * once.  The alarm doesn't wake the device: widgets that can't be seen can wait.
+ */
+public final class WidgetUpdateScheduler {
+
+    private static final long UPDATE_DELAY_MILLIS = 1000;
+
+    // The content hash last pushed to each widget, by app widget id.
+    private static final SparseIntArray sPushedHashes = new SparseIntArray();
+
+    private WidgetUpdateScheduler() {
+    }
+
+    /**
+     * Updates the widgets shortly, together with any other changes that come in before then.
+     */
+    public static void scheduleUpdate(Context context) {
+        // Setting the package ensures that only components in our app will receive the broadcast
+        Intent dataUpdatedIntent = new Intent(SunshineSyncAdapter.ACTION_DATA_UPDATED)
+                .setPackage(context.getPackageName());
+        PendingIntent pendingIntent = PendingIntent.getBroadcast(context, 0, dataUpdatedIntent,
+                PendingIntent.FLAG_UPDATE_CURRENT);
+        AlarmManager alarmManager = (AlarmManager) context.getSystemService(Context.ALARM_SERVICE);
+        long triggerAt = SystemClock.elapsedRealtime() + UPDATE_DELAY_MILLIS;
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.KITKAT) {
+            setExact(alarmManager, triggerAt, pendingIntent);
+        } else {
+            alarmManager.set(AlarmManager.ELAPSED_REALTIME, triggerAt, pendingIntent);
+        }
+    }
+
+    // Since KitKat, set() may batch the alarm with others for a long time.
+    @TargetApi(Build.VERSION_CODES.KITKAT)
+    private static void setExact(AlarmManager alarmManager, long triggerAt,
+                                 PendingIntent pendingIntent) {
+        alarmManager.setExact(AlarmManager.ELAPSED_REALTIME, triggerAt, pendingIntent);
+    }
+
+    /**
+     * Records {@code contentHash} as what the widget shows.
+     *
+     * @return true if the widget was showing something else, or nothing we know of, and needs
+     * to be updated
+     */
+    static boolean hasChanged(int appWidgetId, int contentHash) {
+        synchronized (sPushedHashes) {
+            int index = sPushedHashes.indexOfKey(appWidgetId);
+            if (index >= 0 && sPushedHashes.valueAt(index) == contentHash) {
+                return false;
+            }
+            sPushedHashes.put(appWidgetId, contentHash);
+            return true;
+        }
+    }
+
+    /**
+     * Forgets what the widgets were sent, for when the host has asked for them to be redrawn or
+     * they were deleted.
+     */
+    static void forget(int[] appWidgetIds) {
+        synchronized (sPushedHashes) {
+            for (int appWidgetId : appWidgetIds) {
+                sPushedHashes.delete(appWidgetId);
+            }
+        }
+    }
+}
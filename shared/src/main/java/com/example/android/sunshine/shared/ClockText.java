@@ -0,0 +1,137 @@
+/*
+ * Copyright (C) 2015 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.sunshine.shared;
+
+import java.util.Calendar;
+import java.util.Locale;
+import java.util.TimeZone;
+
+/**
+ * The text a watch face shows for the time: the hour ("9:", "14:"), the minutes ("05") and the
+ * date ("Tue, Jun 9 2015").  The hour and minutes are kept in char arrays that are rewritten in
+ * place, so that {@link #update} allocates nothing as the minutes go by; only the date is
+ * formatted again, once a day.  {@link #update} does nothing at all until the minute changes, so
+ * it can be called on every frame.
+ *
+ * Not thread safe: meant to be used from the thread that draws.
+ */
+public final class ClockText {
+
+    private static final long MINUTE_IN_MILLIS = 60 * 1000L;
+    private static final int MINUTES_IN_DAY = 24 * 60;
+
+    private final Locale mLocale;
+    private final Calendar mCalendar;
+    private TimeZone mTimeZone;
+
+    // The minute the text is for, in UTC millis.
+    private long mMinuteStart;
+    private long mNextMinuteStart = Long.MIN_VALUE;
+    private int mJulianDay;
+
+    private final char[] mHour = new char[3];
+    private int mHourLength;
+    private final char[] mMinutes = new char[2];
+    private String mDate;
+
+    public ClockText(Locale locale, TimeZone timeZone) {
+        mLocale = locale;
+        mCalendar = Calendar.getInstance(timeZone, locale);
+        mTimeZone = timeZone;
+    }
+
+    /**
+     * Switches to another time zone; the text is for the new one after the next
+     * {@link #update}.
+     */
+    public void setTimeZone(TimeZone timeZone) {
+        mTimeZone = timeZone;
+        mCalendar.setTimeZone(timeZone);
+        mNextMinuteStart = Long.MIN_VALUE;
+    }
+
+    /**
+     * Brings the text up to date for {@code now}.
+     *
+     * @return true if the text changed, false if it is still the text of the same minute
+     */
+    public boolean update(long now) {
+        if (now >= mMinuteStart && now < mNextMinuteStart) {
+            return false;
+        }
+        // Offsets only change on the minute, so the one for now holds for the whole minute.
+        long offsetMillis = mTimeZone.getOffset(now);
+        long localMinute = (now + offsetMillis) / MINUTE_IN_MILLIS;
+        mMinuteStart = localMinute * MINUTE_IN_MILLIS - offsetMillis;
+        mNextMinuteStart = mMinuteStart + MINUTE_IN_MILLIS;
+
+        int minuteOfDay = (int) (localMinute % MINUTES_IN_DAY);
+        int hour = minuteOfDay / 60;
+        int minute = minuteOfDay % 60;
+        mHourLength = 0;
+        if (hour >= 10) {
+            mHour[mHourLength++] = (char) ('0' + hour / 10);
+        }
+        mHour[mHourLength++] = (char) ('0' + hour % 10);
+        mHour[mHourLength++] = ':';
+        mMinutes[0] = (char) ('0' + minute / 10);
+        mMinutes[1] = (char) ('0' + minute % 10);
+
+        int julianDay = DayFormatter.getJulianDay(now, offsetMillis);
+        if (mDate == null || julianDay != mJulianDay) {
+            mJulianDay = julianDay;
+            mDate = formatDate(now);
+        }
+        return true;
+    }
+
+    private String formatDate(long now) {
+        mCalendar.setTimeInMillis(now);
+        return mCalendar.getDisplayName(Calendar.DAY_OF_WEEK, Calendar.SHORT, mLocale)
+                + ", " + mCalendar.getDisplayName(Calendar.MONTH, Calendar.SHORT, mLocale)
+                + " " + mCalendar.get(Calendar.DAY_OF_MONTH)
+                + " " + mCalendar.get(Calendar.YEAR);
+    }
+
+    /**
+     * @return the hour followed by a colon, in the first {@link #getHourLength} chars
+     */
+    public char[] getHour() {
+        return mHour;
+    }
+
+    public int getHourLength() {
+        return mHourLength;
+    }
+
+    /**
+     * @return the two digits of the minutes
+     */
+    public char[] getMinutes() {
+        return mMinutes;
+    }
+
+    public String getDate() {
+        return mDate;
+    }
+
+    /**
+     * @return the Julian day of the date
+     */
+    public int getJulianDay() {
+        return mJulianDay;
+    }
+}
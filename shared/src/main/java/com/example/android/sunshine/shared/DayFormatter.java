@@ -0,0 +1,196 @@
+/*
+ * Copyright (C) 2015 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.sunshine.shared;
+
+import java.text.SimpleDateFormat;
+import java.util.Locale;
+import java.util.TimeZone;
+
+/**
+ * Formats forecast dates for display ("Today, June 8", "Tomorrow", "Wednesday", "Mon Jun 8"),
+ * remembering the strings for each Julian day so that formatting a day again only costs an
+ * array lookup.  What a day is called depends on which day is today, so a formatter is only good
+ * for the day it was made on and the locale it was made for; check {@link #isValidFor} and make
+ * a new one when it returns false.  A formatter also expires after an hour, so that a new time
+ * zone is picked up without having to look at the default zone on every call.
+ *
+ * Safe to use from any thread.
+ */
+public final class DayFormatter {
+
+    // The Julian day of the epoch, as used by android.text.format.Time.
+    public static final int EPOCH_JULIAN_DAY = 2440588;
+
+    private static final long HOUR_IN_MILLIS = 60 * 60 * 1000L;
+    private static final long DAY_IN_MILLIS = 24 * HOUR_IN_MILLIS;
+
+    // Must be a power of two.  Comfortably more than the days in a forecast.
+    private static final int CACHE_SIZE = 32;
+
+    private final Locale mLocale;
+    private final long mOffsetMillis;
+    private final int mToday;
+    private final long mValidFrom;
+    private final long mValidUntil;
+
+    private final String mTodayText;
+    private final String mTomorrowText;
+    private final String mFullFormat;
+
+    // SimpleDateFormat isn't thread safe, so these are only used while holding the lock on this.
+    private final SimpleDateFormat mDayNameFormat;
+    private final SimpleDateFormat mMonthDayFormat;
+    private final SimpleDateFormat mShortDateFormat;
+
+    // Indexed by Julian day modulo CACHE_SIZE.
+    private final Day[] mDays = new Day[CACHE_SIZE];
+
+    private static final class Day {
+        final int mJulianDay;
+        final String mDayName;
+        final String mMonthDay;
+        final String mFriendly;
+        final String mLongFriendly;
+        final String mFullFriendly;
+
+        Day(int julianDay, String dayName, String monthDay, String friendly, String longFriendly,
+            String fullFriendly) {
+            mJulianDay = julianDay;
+            mDayName = dayName;
+            mMonthDay = monthDay;
+            mFriendly = friendly;
+            mLongFriendly = longFriendly;
+            mFullFriendly = fullFriendly;
+        }
+    }
+
+    /**
+     * @param now          the current time, which decides which day is today
+     * @param todayText    what to call today, e.g. "Today"
+     * @param tomorrowText what to call tomorrow, e.g. "Tomorrow"
+     * @param fullFormat   the format for a day name followed by the month and day, e.g.
+     *                     "%1$s, %2$s"
+     */
+    public DayFormatter(Locale locale, TimeZone timeZone, long now, String todayText,
+                        String tomorrowText, String fullFormat) {
+        mLocale = locale;
+        mOffsetMillis = timeZone.getOffset(now);
+        mToday = getJulianDay(now, mOffsetMillis);
+        mValidFrom = (mToday - EPOCH_JULIAN_DAY) * DAY_IN_MILLIS - mOffsetMillis;
+        mValidUntil = Math.min(mValidFrom + DAY_IN_MILLIS, now + HOUR_IN_MILLIS);
+
+        mTodayText = todayText;
+        mTomorrowText = tomorrowText;
+        mFullFormat = fullFormat;
+
+        mDayNameFormat = createFormat("EEEE", locale, timeZone);
+        mMonthDayFormat = createFormat("MMMM dd", locale, timeZone);
+        mShortDateFormat = createFormat("EEE MMM dd", locale, timeZone);
+    }
+
+    private static SimpleDateFormat createFormat(String pattern, Locale locale,
+                                                 TimeZone timeZone) {
+        SimpleDateFormat format = new SimpleDateFormat(pattern, locale);
+        format.setTimeZone(timeZone);
+        return format;
+    }
+
+    /**
+     * @return the Julian day that {@code millis} falls on, {@code offsetMillis} away from UTC
+     */
+    public static int getJulianDay(long millis, long offsetMillis) {
+        return (int) ((millis + offsetMillis) / DAY_IN_MILLIS) + EPOCH_JULIAN_DAY;
+    }
+
+    /**
+     * @return true if this formatter still names the days correctly for {@code locale} at
+     * {@code now}
+     */
+    public boolean isValidFor(Locale locale, long now) {
+        return now >= mValidFrom && now < mValidUntil && mLocale.equals(locale);
+    }
+
+    /**
+     * For today: "Today, June 8" if {@code displayLongToday}, otherwise "Today".  For tomorrow:
+     * "Tomorrow".  For the rest of the week: "Wednesday".  For all days after that: "Mon Jun 8".
+     */
+    public String getFriendlyDayString(long dateInMillis, boolean displayLongToday) {
+        Day day = getDay(dateInMillis);
+        return displayLongToday ? day.mLongFriendly : day.mFriendly;
+    }
+
+    /**
+     * @return the day name followed by the month and day, e.g. "Tomorrow, June 9"
+     */
+    public String getFullFriendlyDayString(long dateInMillis) {
+        return getDay(dateInMillis).mFullFriendly;
+    }
+
+    /**
+     * @return "Today", "Tomorrow" or the name of the day of the week
+     */
+    public String getDayName(long dateInMillis) {
+        return getDay(dateInMillis).mDayName;
+    }
+
+    /**
+     * @return the month and day, e.g. "June 24"
+     */
+    public String getFormattedMonthDay(long dateInMillis) {
+        return getDay(dateInMillis).mMonthDay;
+    }
+
+    private Day getDay(long dateInMillis) {
+        int julianDay = getJulianDay(dateInMillis, mOffsetMillis);
+        int slot = julianDay & (CACHE_SIZE - 1);
+        // Days are immutable, so a racing thread sees either a whole day or none.
+        Day day = mDays[slot];
+        if (day == null || day.mJulianDay != julianDay) {
+            day = formatDay(julianDay);
+            mDays[slot] = day;
+        }
+        return day;
+    }
+
+    private synchronized Day formatDay(int julianDay) {
+        // Every time on the day has to give the same strings, so the day is formatted at noon,
+        // which is on the same date even past a daylight saving change, where mOffsetMillis is
+        // an hour off.
+        long dateInMillis = (julianDay - EPOCH_JULIAN_DAY) * DAY_IN_MILLIS - mOffsetMillis
+                + DAY_IN_MILLIS / 2;
+
+        String dayName;
+        if (julianDay == mToday) {
+            dayName = mTodayText;
+        } else if (julianDay == mToday + 1) {
+            dayName = mTomorrowText;
+        } else {
+            dayName = mDayNameFormat.format(dateInMillis);
+        }
+        String monthDay = mMonthDayFormat.format(dateInMillis);
+        String fullFriendly = String.format(mLocale, mFullFormat, dayName, monthDay);
+
+        String friendly;
+        if (julianDay < mToday + 7) {
+            friendly = dayName;
+        } else {
+            friendly = mShortDateFormat.format(dateInMillis);
+        }
+        String longFriendly = julianDay == mToday ? fullFriendly : friendly;
+
+        return new Day(julianDay, dayName, monthDay, friendly, longFriendly, fullFriendly);
+    }
+}
@@ -0,0 +1,102 @@
+/*
+ * Copyright (C) 2015 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.sunshine.shared;
+
+/**
+ * Adds up how long frames take to draw and how much they allocate, between
+ * {@link #beginFrame} and {@link #endFrame}.  Allocations are counted by an
+ * {@link AllocationSource}, in whatever unit it counts in: objects on Android, bytes on the JVM.
+ * Recording a frame allocates nothing.
+ *
+ * Not thread safe: meant to be used from the thread that draws.
+ */
+public final class FrameStats {
+
+    /**
+     * A running count of what the current thread has allocated.
+     */
+    public interface AllocationSource {
+        long getAllocations();
+    }
+
+    /**
+     * For when allocations can't be counted; they all come to zero.
+     */
+    public static final AllocationSource NO_ALLOCATIONS = new AllocationSource() {
+        @Override
+        public long getAllocations() {
+            return 0;
+        }
+    };
+
+    private final AllocationSource mSource;
+
+    private long mFrameStartNanos;
+    private long mFrameStartAllocations;
+
+    private int mFrameCount;
+    private long mTotalNanos;
+    private long mMaxFrameNanos;
+    private long mTotalAllocations;
+    private long mMaxFrameAllocations;
+
+    public FrameStats(AllocationSource source) {
+        mSource = source;
+    }
+
+    public void beginFrame() {
+        mFrameStartAllocations = mSource.getAllocations();
+        mFrameStartNanos = System.nanoTime();
+    }
+
+    public void endFrame() {
+        long nanos = System.nanoTime() - mFrameStartNanos;
+        long allocations = mSource.getAllocations() - mFrameStartAllocations;
+        mFrameCount++;
+        mTotalNanos += nanos;
+        mMaxFrameNanos = Math.max(mMaxFrameNanos, nanos);
+        mTotalAllocations += allocations;
+        mMaxFrameAllocations = Math.max(mMaxFrameAllocations, allocations);
+    }
+
+    public void reset() {
+        mFrameCount = 0;
+        mTotalNanos = 0;
+        mMaxFrameNanos = 0;
+        mTotalAllocations = 0;
+        mMaxFrameAllocations = 0;
+    }
+
+    public int getFrameCount() {
+        return mFrameCount;
+    }
+
+    public long getAverageFrameNanos() {
+        return mFrameCount == 0 ? 0 : mTotalNanos / mFrameCount;
+    }
+
+    public long getMaxFrameNanos() {
+        return mMaxFrameNanos;
+    }
+
+    public long getTotalAllocations() {
+        return mTotalAllocations;
+    }
+
+    public long getMaxFrameAllocations() {
+        return mMaxFrameAllocations;
+    }
+}
@@ -0,0 +1,146 @@
+/*
+ * Copyright (C) 2015 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.sunshine.shared;
+
+/**
+ * Maps OpenWeatherMap condition ids to what the phone and the watch show for them, through
+ * tables indexed by the id that are filled in once.  The two apps have their own resources, so
+ * a condition maps to a group, which each app turns into its own icon and art, and to a
+ * description index, which the app turns into its own string.
+ *
+ * Based on weather code data found at:
+ * http://bugs.openweathermap.org/projects/api/wiki/Weather_Condition_Codes
+ */
+public final class WeatherConditions {
+
+    public static final int GROUP_NONE = -1;
+    public static final int GROUP_STORM = 0;
+    public static final int GROUP_LIGHT_RAIN = 1;
+    public static final int GROUP_RAIN = 2;
+    public static final int GROUP_SNOW = 3;
+    public static final int GROUP_FOG = 4;
+    public static final int GROUP_CLEAR = 5;
+    public static final int GROUP_LIGHT_CLOUDS = 6;
+    public static final int GROUP_CLOUDS = 7;
+    public static final int GROUP_COUNT = 8;
+
+    public static final int DESCRIPTION_NONE = -1;
+
+    // Indexed by group.  These are the names the art packs use for their images.
+    private static final String[] ART_SLUGS = {
+            "storm",
+            "light_rain",
+            "rain",
+            "snow",
+            "fog",
+            "clear",
+            "light_clouds",
+            "clouds",
+    };
+
+    // The conditions that have a description, in description index order.  Every 2xx condition
+    // shares the first description and every 3xx condition the second.
+    private static final int[] DESCRIBED_CONDITIONS = {
+            200, 300,
+            500, 501, 502, 503, 504, 511, 520, 531,
+            600, 601, 602, 611, 612, 615, 616, 620, 621, 622,
+            701, 711, 721, 731, 741, 751, 761, 762, 771, 781,
+            800, 801, 802, 803, 804,
+            900, 901, 902, 903, 904, 905, 906,
+            951, 952, 953, 954, 955, 956, 957, 958, 959, 960, 961, 962,
+    };
+
+    public static final int DESCRIPTION_COUNT = DESCRIBED_CONDITIONS.length;
+
+    private static final int CONDITION_LIMIT = 1000;
+
+    private static final byte[] sGroups = new byte[CONDITION_LIMIT];
+    private static final byte[] sDescriptions = new byte[CONDITION_LIMIT];
+
+    static {
+        fillGroup(0, CONDITION_LIMIT - 1, GROUP_NONE);
+        fillGroup(200, 232, GROUP_STORM);
+        fillGroup(300, 321, GROUP_LIGHT_RAIN);
+        fillGroup(500, 504, GROUP_RAIN);
+        fillGroup(511, 511, GROUP_SNOW);
+        fillGroup(520, 531, GROUP_RAIN);
+        fillGroup(600, 622, GROUP_SNOW);
+        // 761 (dust) is in the fog range; only 781 (tornado) is shown as a storm.
+        fillGroup(701, 761, GROUP_FOG);
+        fillGroup(781, 781, GROUP_STORM);
+        fillGroup(800, 800, GROUP_CLEAR);
+        fillGroup(801, 801, GROUP_LIGHT_CLOUDS);
+        fillGroup(802, 804, GROUP_CLOUDS);
+
+        for (int i = 0; i < CONDITION_LIMIT; i++) {
+            sDescriptions[i] = DESCRIPTION_NONE;
+        }
+        for (int i = 0; i < DESCRIPTION_COUNT; i++) {
+            sDescriptions[DESCRIBED_CONDITIONS[i]] = (byte) i;
+        }
+        for (int weatherId = 200; weatherId <= 232; weatherId++) {
+            sDescriptions[weatherId] = 0;
+        }
+        for (int weatherId = 300; weatherId <= 321; weatherId++) {
+            sDescriptions[weatherId] = 1;
+        }
+    }
+
+    private WeatherConditions() {
+    }
+
+    private static void fillGroup(int first, int last, int group) {
+        for (int weatherId = first; weatherId <= last; weatherId++) {
+            sGroups[weatherId] = (byte) group;
+        }
+    }
+
+    /**
+     * @return one of the GROUP_ constants, GROUP_NONE if there is no icon for the condition
+     */
+    public static int getGroup(int weatherId) {
+        if (weatherId < 0 || weatherId >= CONDITION_LIMIT) {
+            return GROUP_NONE;
+        }
+        return sGroups[weatherId];
+    }
+
+    /**
+     * @return the index of the condition's description, from 0 up to DESCRIPTION_COUNT, or
+     * DESCRIPTION_NONE if it has none.  The apps keep their description strings in the order of
+     * {@link #getDescribedCondition}.
+     */
+    public static int getDescription(int weatherId) {
+        if (weatherId < 0 || weatherId >= CONDITION_LIMIT) {
+            return DESCRIPTION_NONE;
+        }
+        return sDescriptions[weatherId];
+    }
+
+    /**
+     * @return the condition id that description index {@code description} was written for
+     */
+    public static int getDescribedCondition(int description) {
+        return DESCRIBED_CONDITIONS[description];
+    }
+
+    /**
+     * @return the name the art packs use for the group's image, or null for GROUP_NONE
+     */
+    public static String getArtSlug(int group) {
+        return group == GROUP_NONE ? null : ART_SLUGS[group];
+    }
+}
@@ -0,0 +1,229 @@
+/*
+ * Copyright (C) 2015 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.sunshine.shared;
+
+/**
+ * The forecast the phone sends the watch, and its encoding on the wire.  The layout is fixed,
+ * big-endian:
+ *
+ * <pre>
+ * header  0  version        byte    VERSION
+ *         1  flags          byte    FLAG_METRIC if the user wants Celsius
+ *         2  day size       byte    bytes per day, at least DAY_SIZE
+ *         3  day count      byte
+ *         4  timestamp      long    when the phone sent it, in millis
+ * day     0  julian day     int     in the phone's time zone
+ *         4  weather id     short   unsigned
+ *         6  high           short   tenths of a degree Celsius
+ *         8  low            short   tenths of a degree Celsius
+ * </pre>
+ *
+ * The version only goes up for changes older watches can't read.  Fields added at the end of a
+ * day raise the day size instead, and decoders skip what they don't know about.
+ *
+ * A message is meant to be reused: {@link #decode} fills it in without allocating, so the watch
+ * can keep one around for every message it receives.  Not thread safe.
+ */
+public final class WeatherMessage {
+
+    public static final int VERSION = 1;
+
+    // The most days a message holds; decoding drops any after these.
+    public static final int MAX_DAYS = 16;
+
+    static final int HEADER_SIZE = 12;
+    static final int DAY_SIZE = 10;
+
+    private static final int FLAG_METRIC = 1;
+
+    private long mTimestamp;
+    private boolean mMetric;
+    private int mDayCount;
+    private final int[] mJulianDays = new int[MAX_DAYS];
+    private final int[] mWeatherIds = new int[MAX_DAYS];
+    private final short[] mHighs = new short[MAX_DAYS];
+    private final short[] mLows = new short[MAX_DAYS];
+
+    public void clear() {
+        mTimestamp = 0;
+        mMetric = false;
+        mDayCount = 0;
+    }
+
+    public long getTimestamp() {
+        return mTimestamp;
+    }
+
+    public void setTimestamp(long timestamp) {
+        mTimestamp = timestamp;
+    }
+
+    /**
+     * @return true if the temperatures should be shown in Celsius, false for Fahrenheit
+     */
+    public boolean isMetric() {
+        return mMetric;
+    }
+
+    public void setMetric(boolean metric) {
+        mMetric = metric;
+    }
+
+    public int getDayCount() {
+        return mDayCount;
+    }
+
+    /**
+     * Adds a day, with its temperatures in Celsius.
+     *
+     * @return false if the message is already full
+     * @throws IllegalArgumentException if {@code weatherId} doesn't fit in an unsigned short
+     */
+    public boolean addDay(int julianDay, int weatherId, double high, double low) {
+        if (weatherId < 0 || weatherId > 0xffff) {
+            throw new IllegalArgumentException("Weather id out of range: " + weatherId);
+        }
+        if (mDayCount == MAX_DAYS) {
+            return false;
+        }
+        mJulianDays[mDayCount] = julianDay;
+        mWeatherIds[mDayCount] = weatherId;
+        mHighs[mDayCount] = toTenths(high);
+        mLows[mDayCount] = toTenths(low);
+        mDayCount++;
+        return true;
+    }
+
+    private static short toTenths(double celsius) {
+        long tenths = Math.round(celsius * 10);
+        return (short) Math.max(Short.MIN_VALUE, Math.min(Short.MAX_VALUE, tenths));
+    }
+
+    /**
+     * @return the index of the day with the given Julian day, or -1 if there is none
+     */
+    public int findDay(int julianDay) {
+        for (int day = 0; day < mDayCount; day++) {
+            if (mJulianDays[day] == julianDay) {
+                return day;
+            }
+        }
+        return -1;
+    }
+
+    public int getJulianDay(int day) {
+        return mJulianDays[day];
+    }
+
+    public int getWeatherId(int day) {
+        return mWeatherIds[day];
+    }
+
+    /**
+     * @return the high, in tenths of a degree Celsius
+     */
+    public int getHigh(int day) {
+        return mHighs[day];
+    }
+
+    /**
+     * @return the low, in tenths of a degree Celsius
+     */
+    public int getLow(int day) {
+        return mLows[day];
+    }
+
+    /**
+     * @return a temperature from {@link #getHigh} or {@link #getLow} in whole degrees of the
+     * units the user wants
+     */
+    public int toDisplayDegrees(int tenthsCelsius) {
+        double celsius = tenthsCelsius / 10.0;
+        return (int) Math.round(mMetric ? celsius : celsius * 1.8 + 32);
+    }
+
+    public byte[] encode() {
+        byte[] data = new byte[HEADER_SIZE + mDayCount * DAY_SIZE];
+        data[0] = VERSION;
+        data[1] = (byte) (mMetric ? FLAG_METRIC : 0);
+        data[2] = DAY_SIZE;
+        data[3] = (byte) mDayCount;
+        putLong(data, 4, mTimestamp);
+        for (int day = 0, offset = HEADER_SIZE; day < mDayCount; day++, offset += DAY_SIZE) {
+            putInt(data, offset, mJulianDays[day]);
+            putShort(data, offset + 4, mWeatherIds[day]);
+            putShort(data, offset + 6, mHighs[day]);
+            putShort(data, offset + 8, mLows[day]);
+        }
+        return data;
+    }
+
+    /**
+     * Reads a message that {@link #encode} wrote, here or in a later version.  Never throws on
+     * bad data and doesn't allocate.
+     *
+     * @return false, leaving the message cleared, if {@code data} isn't a message this version
+     * can read
+     */
+    public boolean decode(byte[] data) {
+        clear();
+        if (data == null || data.length < HEADER_SIZE || data[0] != VERSION) {
+            return false;
+        }
+        int daySize = data[2] & 0xff;
+        int dayCount = data[3] & 0xff;
+        if (daySize < DAY_SIZE || data.length < HEADER_SIZE + dayCount * daySize) {
+            return false;
+        }
+        mMetric = (data[1] & FLAG_METRIC) != 0;
+        mTimestamp = getLong(data, 4);
+        mDayCount = Math.min(dayCount, MAX_DAYS);
+        for (int day = 0, offset = HEADER_SIZE; day < mDayCount; day++, offset += daySize) {
+            mJulianDays[day] = getInt(data, offset);
+            mWeatherIds[day] = getShort(data, offset + 4) & 0xffff;
+            mHighs[day] = getShort(data, offset + 6);
+            mLows[day] = getShort(data, offset + 8);
+        }
+        return true;
+    }
+
+    private static void putShort(byte[] data, int offset, int value) {
+        data[offset] = (byte) (value >> 8);
+        data[offset + 1] = (byte) value;
+    }
+
+    private static void putInt(byte[] data, int offset, int value) {
+        putShort(data, offset, value >> 16);
+        putShort(data, offset + 2, value);
+    }
+
+    private static void putLong(byte[] data, int offset, long value) {
+        putInt(data, offset, (int) (value >> 32));
+        putInt(data, offset + 4, (int) value);
+    }
+
+    private static short getShort(byte[] data, int offset) {
+        return (short) ((data[offset] << 8) | (data[offset + 1] & 0xff));
+    }
+
+    private static int getInt(byte[] data, int offset) {
+        return (getShort(data, offset) << 16) | (getShort(data, offset + 2) & 0xffff);
+    }
+
+    private static long getLong(byte[] data, int offset) {
+        return ((long) getInt(data, offset) << 32) | (getInt(data, offset + 4) & 0xffffffffL);
+    }
+}
@@ -0,0 +1,56 @@
+/*
+ * Copyright (C) 2015 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.sunshine.shared;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+
+/**
+ * Counts the bytes the current thread allocates, on JVMs that support it.
+ */
+public class AllocationCounter {
+
+    private static final com.sun.management.ThreadMXBean sThreadBean = getThreadBean();
+
+    private static com.sun.management.ThreadMXBean getThreadBean() {
+        ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+        if (bean instanceof com.sun.management.ThreadMXBean
+                && ((com.sun.management.ThreadMXBean) bean).isThreadAllocatedMemorySupported()) {
+            return (com.sun.management.ThreadMXBean) bean;
+        }
+        return null;
+    }
+
+    static boolean canMeasureAllocations() {
+        return sThreadBean != null;
+    }
+
+    /**
+     * @return the bytes allocated by this thread so far, or 0 if that can't be measured
+     */
+    static long allocatedBytes() {
+        return sThreadBean == null
+                ? 0 : sThreadBean.getThreadAllocatedBytes(Thread.currentThread().getId());
+    }
+
+    /**
+     * @return what measuring with {@link #allocatedBytes} allocates by itself
+     */
+    static long measuringOverhead() {
+        long before = allocatedBytes();
+        return allocatedBytes() - before;
+    }
+}
@@ -0,0 +1,159 @@
+/*
+ * Copyright (C) 2015 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.sunshine.shared;
+
+import org.junit.Test;
+
+import java.util.Calendar;
+import java.util.Locale;
+import java.util.TimeZone;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assume.assumeTrue;
+
+public class ClockTextTest {
+
+    private static final long MINUTE_IN_MILLIS = 60 * 1000L;
+
+    private static final TimeZone ZONE = TimeZone.getTimeZone("America/Los_Angeles");
+
+    private static long millis(TimeZone zone, int year, int month, int day, int hour,
+                               int minute) {
+        Calendar calendar = Calendar.getInstance(zone, Locale.US);
+        calendar.clear();
+        calendar.set(year, month, day, hour, minute);
+        return calendar.getTimeInMillis();
+    }
+
+    private static String getTime(ClockText text) {
+        return new String(text.getHour(), 0, text.getHourLength())
+                + new String(text.getMinutes());
+    }
+
+    /*
+        The text should be what the watch face used to build with a Calendar on every frame.
+     */
+    private static void assertMatchesCalendar(ClockText text, long now, TimeZone zone) {
+        Calendar calendar = Calendar.getInstance(zone, Locale.US);
+        calendar.setTimeInMillis(now);
+        String time = calendar.get(Calendar.HOUR_OF_DAY) + ":"
+                + String.format(Locale.US, "%02d", calendar.get(Calendar.MINUTE));
+        String date = calendar.getDisplayName(Calendar.DAY_OF_WEEK, Calendar.SHORT, Locale.US)
+                + ", " + calendar.getDisplayName(Calendar.MONTH, Calendar.SHORT, Locale.US)
+                + " " + calendar.get(Calendar.DAY_OF_MONTH)
+                + " " + calendar.get(Calendar.YEAR);
+        assertEquals("Error: Wrong time for " + now, time, getTime(text));
+        assertEquals("Error: Wrong date for " + now, date, text.getDate());
+    }
+
+    @Test
+    public void testFormatsTheTime() {
+        ClockText text = new ClockText(Locale.US, ZONE);
+        assertTrue(text.update(millis(ZONE, 2015, Calendar.JUNE, 9, 9, 5)));
+        assertEquals("9:05", getTime(text));
+        assertEquals("Tue, Jun 9 2015", text.getDate());
+
+        assertTrue(text.update(millis(ZONE, 2015, Calendar.JUNE, 9, 23, 59)));
+        assertEquals("23:59", getTime(text));
+        assertTrue(text.update(millis(ZONE, 2015, Calendar.JUNE, 10, 0, 0)));
+        assertEquals("0:00", getTime(text));
+        assertEquals("Wed, Jun 10 2015", text.getDate());
+    }
+
+    /*
+        Every minute of a day with a daylight saving change, and of the day after, should read
+        the same as it would with a Calendar.
+     */
+    @Test
+    public void testMatchesCalendarAcrossDaylightSaving() {
+        ClockText text = new ClockText(Locale.US, ZONE);
+        long start = millis(ZONE, 2015, Calendar.MARCH, 8, 0, 0);
+        for (long now = start; now < start + 2 * 24 * 60 * MINUTE_IN_MILLIS;
+             now += MINUTE_IN_MILLIS) {
+            text.update(now);
+            assertMatchesCalendar(text, now, ZONE);
+        }
+    }
+
+    @Test
+    public void testOnlyUpdatesWhenTheMinuteChanges() {
+        ClockText text = new ClockText(Locale.US, ZONE);
+        long minute = millis(ZONE, 2015, Calendar.JUNE, 9, 9, 5);
+        assertTrue(text.update(minute + 1000));
+        String date = text.getDate();
+        assertFalse("Error: Updated within the minute", text.update(minute));
+        assertFalse("Error: Updated within the minute",
+                text.update(minute + MINUTE_IN_MILLIS - 1));
+        assertTrue("Error: Didn't update for the next minute",
+                text.update(minute + MINUTE_IN_MILLIS));
+        assertSame("Error: The date was formatted again on the same day", date, text.getDate());
+    }
+
+    @Test
+    public void testSwitchesTimeZones() {
+        ClockText text = new ClockText(Locale.US, ZONE);
+        long now = millis(ZONE, 2015, Calendar.JUNE, 9, 20, 30);
+        text.update(now);
+
+        TimeZone tokyo = TimeZone.getTimeZone("Asia/Tokyo");
+        text.setTimeZone(tokyo);
+        assertTrue("Error: Didn't update for the new time zone", text.update(now));
+        assertMatchesCalendar(text, now, tokyo);
+        assertEquals("12:30", getTime(text));
+    }
+
+    /*
+        Drawing a frame calls update, and once the date is formatted for the day that must not
+        allocate, neither within a minute nor as the minutes go by.
+     */
+    @Test
+    public void testUpdatesDoNotAllocate() {
+        assumeTrue(AllocationCounter.canMeasureAllocations());
+        final long overhead = AllocationCounter.measuringOverhead();
+        FrameStats stats = new FrameStats(new FrameStats.AllocationSource() {
+            private long mOverhead;
+
+            @Override
+            public long getAllocations() {
+                // Leave out what counting allocates, which adds up once per frame.
+                mOverhead += overhead;
+                return AllocationCounter.allocatedBytes() - mOverhead;
+            }
+        });
+        ClockText text = new ClockText(Locale.US, ZONE);
+        long morning = millis(ZONE, 2015, Calendar.JUNE, 9, 8, 0);
+        // A minute of frames a second, then the rest of the morning a minute at a time.
+        for (int warmUp = 0; warmUp < 2; warmUp++) {
+            stats.reset();
+            for (int second = 0; second < 60; second++) {
+                stats.beginFrame();
+                text.update(morning + second * 1000L);
+                stats.endFrame();
+            }
+            for (int minute = 1; minute < 4 * 60; minute++) {
+                stats.beginFrame();
+                text.update(morning + minute * MINUTE_IN_MILLIS);
+                stats.endFrame();
+            }
+        }
+
+        assertEquals(60 + 4 * 60 - 1, stats.getFrameCount());
+        assertEquals("Error: Updating the text allocated", 0, stats.getTotalAllocations());
+    }
+}
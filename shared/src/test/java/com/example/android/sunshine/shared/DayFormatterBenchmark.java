@@ -0,0 +1,140 @@
+/*
+ * Copyright (C) 2015 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.sunshine.shared;
+
+import java.text.SimpleDateFormat;
+import java.util.Calendar;
+import java.util.Locale;
+import java.util.TimeZone;
+
+/**
+ * Compares formatting a two week forecast's dates with {@link DayFormatter} against the way
+ * Utility used to do it, which made a new Time and SimpleDateFormat on every call.  Run its main
+ * method by hand; {@link DayFormatterTest} checks that both give the same strings and that the
+ * formatter doesn't allocate once it has seen a day.
+ */
+public class DayFormatterBenchmark {
+
+    static final String TODAY = "Today";
+    static final String TOMORROW = "Tomorrow";
+    static final String FULL_FORMAT = "%1$s, %2$s";
+
+    private static final long DAY_IN_MILLIS = 24 * 60 * 60 * 1000L;
+    private static final int FORECAST_DAYS = 14;
+
+    public static void main(String[] args) {
+        Locale locale = Locale.getDefault();
+        TimeZone timeZone = TimeZone.getDefault();
+        long now = System.currentTimeMillis();
+        DayFormatter formatter = new DayFormatter(locale, timeZone, now, TODAY, TOMORROW,
+                FULL_FORMAT);
+
+        int rounds = 20000;
+        for (int pass = 0; pass < 2; pass++) {
+            // The first pass warms up.
+            report("legacy", rounds, now, null, locale, timeZone);
+            report("memoized", rounds, now, formatter, locale, timeZone);
+        }
+    }
+
+    private static void report(String name, int rounds, long now, DayFormatter formatter,
+                               Locale locale, TimeZone timeZone) {
+        long allocated = AllocationCounter.allocatedBytes();
+        long start = System.nanoTime();
+        int checksum = 0;
+        for (int round = 0; round < rounds; round++) {
+            checksum += formatter == null
+                    ? formatForecastLegacy(now, locale, timeZone)
+                    : formatForecast(formatter, now);
+        }
+        long elapsed = System.nanoTime() - start;
+        allocated = AllocationCounter.allocatedBytes() - allocated
+                - AllocationCounter.measuringOverhead();
+        int calls = rounds * FORECAST_DAYS * 2;
+        System.out.printf("%s: %.1f ns and %.1f bytes per date (%d)%n", name,
+                (double) elapsed / calls, (double) allocated / calls, checksum);
+    }
+
+    /**
+     * Formats each day of a forecast starting today, short and long, as the list does.
+     *
+     * @return a checksum, so the formatting can't be optimized away
+     */
+    static int formatForecast(DayFormatter formatter, long now) {
+        int checksum = 0;
+        for (int day = 0; day < FORECAST_DAYS; day++) {
+            long date = now + day * DAY_IN_MILLIS;
+            checksum += formatter.getFriendlyDayString(date, false).length();
+            checksum += formatter.getFriendlyDayString(date, true).length();
+        }
+        return checksum;
+    }
+
+    static int formatForecastLegacy(long now, Locale locale, TimeZone timeZone) {
+        int checksum = 0;
+        for (int day = 0; day < FORECAST_DAYS; day++) {
+            long date = now + day * DAY_IN_MILLIS;
+            checksum += getFriendlyDayString(date, false, locale, timeZone).length();
+            checksum += getFriendlyDayString(date, true, locale, timeZone).length();
+        }
+        return checksum;
+    }
+
+    /*
+        What Utility.getFriendlyDayString used to do, with Calendar standing in for Time.
+     */
+    static String getFriendlyDayString(long dateInMillis, boolean displayLongToday,
+                                       Locale locale, TimeZone timeZone) {
+        Calendar time = Calendar.getInstance(timeZone, locale);
+        long currentTime = System.currentTimeMillis();
+        int gmtoff = time.get(Calendar.ZONE_OFFSET) + time.get(Calendar.DST_OFFSET);
+        int julianDay = DayFormatter.getJulianDay(dateInMillis, gmtoff);
+        int currentJulianDay = DayFormatter.getJulianDay(currentTime, gmtoff);
+
+        if (displayLongToday && julianDay == currentJulianDay) {
+            return String.format(locale, FULL_FORMAT, TODAY,
+                    getFormattedMonthDay(dateInMillis, locale, timeZone));
+        } else if ( julianDay < currentJulianDay + 7 ) {
+            return getDayName(dateInMillis, locale, timeZone);
+        } else {
+            SimpleDateFormat shortenedDateFormat = new SimpleDateFormat("EEE MMM dd", locale);
+            shortenedDateFormat.setTimeZone(timeZone);
+            return shortenedDateFormat.format(dateInMillis);
+        }
+    }
+
+    static String getDayName(long dateInMillis, Locale locale, TimeZone timeZone) {
+        Calendar t = Calendar.getInstance(timeZone, locale);
+        int gmtoff = t.get(Calendar.ZONE_OFFSET) + t.get(Calendar.DST_OFFSET);
+        int julianDay = DayFormatter.getJulianDay(dateInMillis, gmtoff);
+        int currentJulianDay = DayFormatter.getJulianDay(System.currentTimeMillis(), gmtoff);
+        if (julianDay == currentJulianDay) {
+            return TODAY;
+        } else if ( julianDay == currentJulianDay +1 ) {
+            return TOMORROW;
+        } else {
+            SimpleDateFormat dayFormat = new SimpleDateFormat("EEEE", locale);
+            dayFormat.setTimeZone(timeZone);
+            return dayFormat.format(dateInMillis);
+        }
+    }
+
+    static String getFormattedMonthDay(long dateInMillis, Locale locale, TimeZone timeZone) {
+        SimpleDateFormat monthDayFormat = new SimpleDateFormat("MMMM dd", locale);
+        monthDayFormat.setTimeZone(timeZone);
+        return monthDayFormat.format(dateInMillis);
+    }
+}
@@ -0,0 +1,155 @@
+/*
+ * Copyright (C) 2015 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.sunshine.shared;
+
+import org.junit.Test;
+
+import java.util.Calendar;
+import java.util.Locale;
+import java.util.TimeZone;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assume.assumeTrue;
+
+public class DayFormatterTest {
+
+    private static final long HOUR_IN_MILLIS = 60 * 60 * 1000L;
+    private static final long DAY_IN_MILLIS = 24 * HOUR_IN_MILLIS;
+
+    private static final TimeZone ZONE = TimeZone.getTimeZone("America/Los_Angeles");
+
+    // Monday, June 8 2015, 10am
+    private static final long NOW = millis(2015, Calendar.JUNE, 8, 10);
+
+    private static long millis(int year, int month, int day, int hour) {
+        Calendar calendar = Calendar.getInstance(ZONE, Locale.US);
+        calendar.clear();
+        calendar.set(year, month, day, hour, 0);
+        return calendar.getTimeInMillis();
+    }
+
+    private static DayFormatter createFormatter(long now) {
+        return new DayFormatter(Locale.US, ZONE, now, DayFormatterBenchmark.TODAY,
+                DayFormatterBenchmark.TOMORROW, DayFormatterBenchmark.FULL_FORMAT);
+    }
+
+    @Test
+    public void testFriendlyDayStrings() {
+        DayFormatter formatter = createFormatter(NOW);
+
+        assertEquals("Today, June 08", formatter.getFriendlyDayString(NOW, true));
+        assertEquals("Today", formatter.getFriendlyDayString(NOW, false));
+        assertEquals("Tomorrow", formatter.getFriendlyDayString(NOW + DAY_IN_MILLIS, true));
+        assertEquals("Thursday", formatter.getFriendlyDayString(NOW + 3 * DAY_IN_MILLIS, false));
+        assertEquals("Mon Jun 15", formatter.getFriendlyDayString(NOW + 7 * DAY_IN_MILLIS, false));
+        assertEquals("Tomorrow, June 09", formatter.getFullFriendlyDayString(NOW + DAY_IN_MILLIS));
+        assertEquals("Wednesday", formatter.getDayName(NOW + 2 * DAY_IN_MILLIS));
+        assertEquals("June 10", formatter.getFormattedMonthDay(NOW + 2 * DAY_IN_MILLIS));
+    }
+
+    /*
+        The formatter should give the same strings the old methods did for the dates the
+        provider stores, which are the starts of days, from yesterday to past the end of a
+        forecast.
+     */
+    @Test
+    public void testMatchesLegacyFormatting() {
+        long now = System.currentTimeMillis();
+        DayFormatter formatter = createFormatter(now);
+        Calendar day = Calendar.getInstance(ZONE, Locale.US);
+        day.setTimeInMillis(now);
+        day.set(Calendar.HOUR_OF_DAY, 0);
+        day.set(Calendar.MINUTE, 0);
+        day.set(Calendar.SECOND, 0);
+        day.set(Calendar.MILLISECOND, 0);
+        day.add(Calendar.DAY_OF_MONTH, -1);
+        for (int i = 0; i < 17; i++) {
+            long date = day.getTimeInMillis();
+            for (boolean longToday : new boolean[] { false, true }) {
+                assertEquals("Error: Formatted " + date + " differently",
+                        DayFormatterBenchmark.getFriendlyDayString(date, longToday, Locale.US,
+                                ZONE),
+                        formatter.getFriendlyDayString(date, longToday));
+            }
+            day.add(Calendar.DAY_OF_MONTH, 1);
+        }
+    }
+
+    @Test
+    public void testDaysAreRemembered() {
+        DayFormatter formatter = createFormatter(NOW);
+        long tomorrowEvening = NOW + DAY_IN_MILLIS + 9 * HOUR_IN_MILLIS;
+        assertSame("Error: The day wasn't remembered",
+                formatter.getFriendlyDayString(NOW + DAY_IN_MILLIS, false),
+                formatter.getFriendlyDayString(tomorrowEvening, false));
+        // 32 days apart, so both days share a slot.
+        long month = NOW + 30 * DAY_IN_MILLIS;
+        long later = NOW + 62 * DAY_IN_MILLIS;
+        assertEquals("Wed Jul 08", formatter.getFriendlyDayString(month, false));
+        assertEquals("Sun Aug 09", formatter.getFriendlyDayString(later, false));
+        assertEquals("Wed Jul 08", formatter.getFriendlyDayString(month, false));
+    }
+
+    /*
+        A formatter is only good for the day and the locale it was made for, and for an hour.
+     */
+    @Test
+    public void testValidity() {
+        DayFormatter formatter = createFormatter(NOW);
+        assertTrue(formatter.isValidFor(Locale.US, NOW));
+        assertTrue(formatter.isValidFor(Locale.US, NOW + HOUR_IN_MILLIS - 1));
+        assertFalse("Error: Valid after an hour",
+                formatter.isValidFor(Locale.US, NOW + HOUR_IN_MILLIS));
+        assertFalse("Error: Valid for another locale", formatter.isValidFor(Locale.FRANCE, NOW));
+        assertFalse("Error: Valid for yesterday", formatter.isValidFor(Locale.US,
+                millis(2015, Calendar.JUNE, 7, 23)));
+
+        long lateEvening = millis(2015, Calendar.JUNE, 8, 23);
+        DayFormatter evening = createFormatter(lateEvening);
+        assertTrue(evening.isValidFor(Locale.US, millis(2015, Calendar.JUNE, 9, 0) - 1));
+        assertFalse("Error: Valid after midnight",
+                evening.isValidFor(Locale.US, millis(2015, Calendar.JUNE, 9, 0)));
+    }
+
+    /*
+        Formatting a day that has been formatted before must not allocate.
+     */
+    @Test
+    public void testRememberedDaysDoNotAllocate() {
+        assumeTrue(AllocationCounter.canMeasureAllocations());
+        long now = System.currentTimeMillis();
+        DayFormatter formatter = createFormatter(now);
+        for (int i = 0; i < 10000; i++) {
+            DayFormatterBenchmark.formatForecast(formatter, now);
+        }
+
+        long overhead = AllocationCounter.measuringOverhead();
+        long allocated = AllocationCounter.allocatedBytes();
+        int checksum = 0;
+        for (int i = 0; i < 10000; i++) {
+            checksum += DayFormatterBenchmark.formatForecast(formatter, now);
+        }
+        allocated = AllocationCounter.allocatedBytes() - allocated - overhead;
+
+        assertTrue(checksum != 0);
+        // The JIT may still allocate a little along the way, but one object per call would come
+        // to megabytes.
+        assertTrue("Error: Formatting allocated " + allocated + " bytes", allocated < 1024);
+    }
+}
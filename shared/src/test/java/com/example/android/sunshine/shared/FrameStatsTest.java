@@ -0,0 +1,72 @@
+/*
+ * Copyright (C) 2015 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.sunshine.shared;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class FrameStatsTest {
+
+    /*
+        Reports whatever count the test sets.
+     */
+    private static class FakeSource implements FrameStats.AllocationSource {
+        long mAllocations;
+
+        @Override
+        public long getAllocations() {
+            return mAllocations;
+        }
+    }
+
+    @Test
+    public void testAddsUpFrames() {
+        FakeSource source = new FakeSource();
+        FrameStats stats = new FrameStats(source);
+
+        stats.beginFrame();
+        source.mAllocations += 3;
+        stats.endFrame();
+        stats.beginFrame();
+        stats.endFrame();
+        stats.beginFrame();
+        source.mAllocations += 5;
+        stats.endFrame();
+
+        assertEquals(3, stats.getFrameCount());
+        assertEquals(8, stats.getTotalAllocations());
+        assertEquals(5, stats.getMaxFrameAllocations());
+        assertTrue(stats.getMaxFrameNanos() >= stats.getAverageFrameNanos());
+    }
+
+    @Test
+    public void testTimesFrames() throws InterruptedException {
+        FrameStats stats = new FrameStats(FrameStats.NO_ALLOCATIONS);
+        stats.beginFrame();
+        Thread.sleep(5);
+        stats.endFrame();
+        assertTrue("Error: The frame took " + stats.getMaxFrameNanos() + "ns",
+                stats.getMaxFrameNanos() >= 5 * 1000 * 1000);
+        assertEquals(0, stats.getTotalAllocations());
+
+        stats.reset();
+        assertEquals(0, stats.getFrameCount());
+        assertEquals(0, stats.getAverageFrameNanos());
+        assertEquals(0, stats.getMaxFrameNanos());
+    }
+}
@@ -0,0 +1,64 @@
+/*
+ * Copyright (C) 2015 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.sunshine.shared;
+
+/**
+ * Times the condition lookups for the first and the last conditions in the table, which took
+ * the fewest and the most range checks before it, and counts what they allocate.  Run its main
+ * method by hand; {@link WeatherConditionsTest} only checks the allocations.
+ */
+public class WeatherConditionsBenchmark {
+
+    private static final int[] CONDITIONS = { 200, 962 };
+
+    public static void main(String[] args) {
+        lookUpAll(100);
+        for (int weatherId : CONDITIONS) {
+            int rounds = 10000000;
+            long allocated = AllocationCounter.allocatedBytes();
+            long start = System.nanoTime();
+            int checksum = 0;
+            for (int i = 0; i < rounds; i++) {
+                checksum += WeatherConditions.getGroup(weatherId)
+                        + WeatherConditions.getDescription(weatherId);
+            }
+            long elapsed = System.nanoTime() - start;
+            allocated = AllocationCounter.allocatedBytes() - allocated
+                    - AllocationCounter.measuringOverhead();
+            System.out.printf("%d: %.2f ns per lookup, %d bytes allocated (%d)%n",
+                    weatherId, (double) elapsed / rounds, allocated, checksum);
+        }
+    }
+
+    /**
+     * Looks up every condition id {@code rounds} times.
+     *
+     * @return a checksum, so the lookups can't be optimized away
+     */
+    static int lookUpAll(int rounds) {
+        int checksum = 0;
+        for (int round = 0; round < rounds; round++) {
+            for (int weatherId = 0; weatherId < 1000; weatherId++) {
+                int group = WeatherConditions.getGroup(weatherId);
+                checksum += group + WeatherConditions.getDescription(weatherId);
+                if (WeatherConditions.getArtSlug(group) != null) {
+                    checksum++;
+                }
+            }
+        }
+        return checksum;
+    }
+}
@@ -0,0 +1,106 @@
+/*
+ * Copyright (C) 2015 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.sunshine.shared;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assume.assumeTrue;
+
+public class WeatherConditionsTest {
+
+    /*
+        The table should give every condition the group the old chain of range checks gave it.
+     */
+    @Test
+    public void testGroupsMatchRanges() {
+        for (int weatherId = -10; weatherId < 1100; weatherId++) {
+            assertEquals("Error: Wrong group for " + weatherId,
+                    groupFromRanges(weatherId), WeatherConditions.getGroup(weatherId));
+        }
+    }
+
+    @Test
+    public void testDescriptions() {
+        for (int i = 0; i < WeatherConditions.DESCRIPTION_COUNT; i++) {
+            assertEquals("Error: Description index doesn't round trip", i,
+                    WeatherConditions.getDescription(WeatherConditions.getDescribedCondition(i)));
+        }
+        assertEquals(0, WeatherConditions.getDescription(211));
+        assertEquals(1, WeatherConditions.getDescription(321));
+        assertEquals(WeatherConditions.DESCRIPTION_NONE, WeatherConditions.getDescription(505));
+        assertEquals(WeatherConditions.DESCRIPTION_NONE, WeatherConditions.getDescription(-1));
+        assertEquals(WeatherConditions.DESCRIPTION_NONE, WeatherConditions.getDescription(1000));
+    }
+
+    @Test
+    public void testArtSlugs() {
+        assertEquals("storm", WeatherConditions.getArtSlug(WeatherConditions.getGroup(781)));
+        assertEquals("fog", WeatherConditions.getArtSlug(WeatherConditions.getGroup(761)));
+        assertEquals("clouds", WeatherConditions.getArtSlug(WeatherConditions.getGroup(804)));
+        assertNull(WeatherConditions.getArtSlug(WeatherConditions.getGroup(900)));
+    }
+
+    /*
+        Lookups run in list binds and on every watch face update, so they must not allocate.
+     */
+    @Test
+    public void testLookupsDoNotAllocate() {
+        assumeTrue(AllocationCounter.canMeasureAllocations());
+        // Warm up first, so that class loading and most of the compilation isn't counted.
+        WeatherConditionsBenchmark.lookUpAll(100);
+
+        long overhead = AllocationCounter.measuringOverhead();
+        long allocated = AllocationCounter.allocatedBytes();
+        // A million lookups of each kind.
+        int checksum = WeatherConditionsBenchmark.lookUpAll(1000);
+        allocated = AllocationCounter.allocatedBytes() - allocated - overhead;
+
+        assertTrue(checksum != 0);
+        // The JIT may still allocate a little along the way, but one object per lookup would
+        // come to megabytes.
+        assertTrue("Error: Lookups allocated " + allocated + " bytes", allocated < 1024);
+    }
+
+    private static int groupFromRanges(int weatherId) {
+        if (weatherId >= 200 && weatherId <= 232) {
+            return WeatherConditions.GROUP_STORM;
+        } else if (weatherId >= 300 && weatherId <= 321) {
+            return WeatherConditions.GROUP_LIGHT_RAIN;
+        } else if (weatherId >= 500 && weatherId <= 504) {
+            return WeatherConditions.GROUP_RAIN;
+        } else if (weatherId == 511) {
+            return WeatherConditions.GROUP_SNOW;
+        } else if (weatherId >= 520 && weatherId <= 531) {
+            return WeatherConditions.GROUP_RAIN;
+        } else if (weatherId >= 600 && weatherId <= 622) {
+            return WeatherConditions.GROUP_SNOW;
+        } else if (weatherId >= 701 && weatherId <= 761) {
+            return WeatherConditions.GROUP_FOG;
+        } else if (weatherId == 761 || weatherId == 781) {
+            return WeatherConditions.GROUP_STORM;
+        } else if (weatherId == 800) {
+            return WeatherConditions.GROUP_CLEAR;
+        } else if (weatherId == 801) {
+            return WeatherConditions.GROUP_LIGHT_CLOUDS;
+        } else if (weatherId >= 802 && weatherId <= 804) {
+            return WeatherConditions.GROUP_CLOUDS;
+        }
+        return WeatherConditions.GROUP_NONE;
+    }
+}
@@ -0,0 +1,230 @@
+/*
+ * Copyright (C) 2015 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.sunshine.shared;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assume.assumeTrue;
+
+public class WeatherMessageTest {
+
+    // Fixed, so that a failure can be reproduced.
+    private static final long SEED = 0x5eed;
+
+    private static WeatherMessage createMessage(Random random) {
+        WeatherMessage message = new WeatherMessage();
+        message.setTimestamp(random.nextLong());
+        message.setMetric(random.nextBoolean());
+        int days = random.nextInt(WeatherMessage.MAX_DAYS + 1);
+        int julianDay = DayFormatter.EPOCH_JULIAN_DAY + random.nextInt(30000);
+        for (int day = 0; day < days; day++) {
+            message.addDay(julianDay + day, random.nextInt(0x10000),
+                    (random.nextInt(2000) - 1000) / 10.0, (random.nextInt(2000) - 1000) / 10.0);
+        }
+        return message;
+    }
+
+    private static void assertSameMessage(WeatherMessage expected, WeatherMessage actual) {
+        assertEquals(expected.getTimestamp(), actual.getTimestamp());
+        assertEquals(expected.isMetric(), actual.isMetric());
+        assertEquals(expected.getDayCount(), actual.getDayCount());
+        for (int day = 0; day < expected.getDayCount(); day++) {
+            assertEquals(expected.getJulianDay(day), actual.getJulianDay(day));
+            assertEquals(expected.getWeatherId(day), actual.getWeatherId(day));
+            assertEquals(expected.getHigh(day), actual.getHigh(day));
+            assertEquals(expected.getLow(day), actual.getLow(day));
+        }
+    }
+
+    @Test
+    public void testRoundTrip() {
+        WeatherMessage message = new WeatherMessage();
+        message.setTimestamp(1433869200000L);
+        message.setMetric(false);
+        assertTrue(message.addDay(2457183, 800, 21.44, -3.96));
+        assertTrue(message.addDay(2457184, 501, 18, 12.05));
+
+        byte[] data = message.encode();
+        assertEquals(WeatherMessage.HEADER_SIZE + 2 * WeatherMessage.DAY_SIZE, data.length);
+
+        WeatherMessage decoded = new WeatherMessage();
+        assertTrue(decoded.decode(data));
+        assertSameMessage(message, decoded);
+        assertEquals(214, decoded.getHigh(0));
+        assertEquals(-40, decoded.getLow(0));
+        // 21.4C is 70.5F, -4C is 24.8F
+        assertEquals(71, decoded.toDisplayDegrees(decoded.getHigh(0)));
+        assertEquals(25, decoded.toDisplayDegrees(decoded.getLow(0)));
+        assertEquals(1, decoded.findDay(2457184));
+        assertEquals(-1, decoded.findDay(2457185));
+    }
+
+    @Test
+    public void testLimits() {
+        WeatherMessage message = new WeatherMessage();
+        for (int day = 0; day < WeatherMessage.MAX_DAYS; day++) {
+            assertTrue(message.addDay(day, 0xffff, 1e6, -1e6));
+        }
+        assertFalse("Error: Added more days than fit", message.addDay(0, 800, 0, 0));
+
+        WeatherMessage decoded = new WeatherMessage();
+        assertTrue(decoded.decode(message.encode()));
+        assertEquals(WeatherMessage.MAX_DAYS, decoded.getDayCount());
+        assertEquals(0xffff, decoded.getWeatherId(0));
+        assertEquals(Short.MAX_VALUE, decoded.getHigh(0));
+        assertEquals(Short.MIN_VALUE, decoded.getLow(0));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testRejectsWeatherIdsThatDoNotFit() {
+        new WeatherMessage().addDay(0, 0x10000, 0, 0);
+    }
+
+    /*
+        A later version may add fields to the end of each day; this one should skip them.
+     */
+    @Test
+    public void testSkipsFieldsItDoesNotKnow() {
+        WeatherMessage message = createMessage(new Random(SEED));
+        byte[] data = message.encode();
+        int extra = 3;
+        int daySize = WeatherMessage.DAY_SIZE + extra;
+        byte[] later = new byte[WeatherMessage.HEADER_SIZE + message.getDayCount() * daySize];
+        System.arraycopy(data, 0, later, 0, WeatherMessage.HEADER_SIZE);
+        later[2] = (byte) daySize;
+        for (int day = 0; day < message.getDayCount(); day++) {
+            System.arraycopy(data, WeatherMessage.HEADER_SIZE + day * WeatherMessage.DAY_SIZE,
+                    later, WeatherMessage.HEADER_SIZE + day * daySize, WeatherMessage.DAY_SIZE);
+            Arrays.fill(later, WeatherMessage.HEADER_SIZE + day * daySize
+                    + WeatherMessage.DAY_SIZE, WeatherMessage.HEADER_SIZE + (day + 1) * daySize,
+                    (byte) 0x7f);
+        }
+
+        WeatherMessage decoded = new WeatherMessage();
+        assertTrue(decoded.decode(later));
+        assertSameMessage(message, decoded);
+    }
+
+    @Test
+    public void testRejectsBadData() {
+        WeatherMessage message = new WeatherMessage();
+        message.addDay(2457183, 800, 20, 10);
+        byte[] data = message.encode();
+
+        WeatherMessage decoded = new WeatherMessage();
+        assertFalse(decoded.decode(null));
+        for (int length = 0; length < data.length; length++) {
+            assertFalse("Error: Decoded a message cut to " + length + " bytes",
+                    decoded.decode(Arrays.copyOf(data, length)));
+            assertEquals(0, decoded.getDayCount());
+        }
+
+        byte[] otherVersion = data.clone();
+        otherVersion[0] = WeatherMessage.VERSION + 1;
+        assertFalse("Error: Decoded another version", decoded.decode(otherVersion));
+
+        byte[] shortDays = data.clone();
+        shortDays[2] = WeatherMessage.DAY_SIZE - 1;
+        assertFalse("Error: Decoded days too short to hold a day", decoded.decode(shortDays));
+
+        // The old text format
+        assertFalse(decoded.decode("800::20::10".getBytes()));
+    }
+
+    /*
+        Every message made up at random should come back the same, through the same message
+        object reused for all of them.
+     */
+    @Test
+    public void testRandomRoundTrips() {
+        Random random = new Random(SEED);
+        WeatherMessage decoded = new WeatherMessage();
+        for (int i = 0; i < 10000; i++) {
+            WeatherMessage message = createMessage(random);
+            assertTrue(decoded.decode(message.encode()));
+            assertSameMessage(message, decoded);
+            // What was decoded encodes to the same bytes.
+            assertTrue(Arrays.equals(message.encode(), decoded.encode()));
+        }
+    }
+
+    /*
+        Random bytes, and valid messages with random bytes changed, must never make decoding
+        throw, and what decodes must be a message that encodes again.
+     */
+    @Test
+    public void testFuzz() {
+        Random random = new Random(SEED);
+        WeatherMessage decoded = new WeatherMessage();
+        for (int i = 0; i < 100000; i++) {
+            byte[] data;
+            if (random.nextBoolean()) {
+                data = new byte[random.nextInt(WeatherMessage.HEADER_SIZE
+                        + (WeatherMessage.MAX_DAYS + 2) * WeatherMessage.DAY_SIZE)];
+                random.nextBytes(data);
+                if (data.length > 0 && random.nextBoolean()) {
+                    data[0] = WeatherMessage.VERSION;
+                }
+            } else {
+                data = createMessage(random).encode();
+                for (int flips = random.nextInt(4); flips >= 0; flips--) {
+                    data[random.nextInt(data.length)] = (byte) random.nextInt();
+                }
+            }
+
+            if (decoded.decode(data)) {
+                assertTrue(decoded.getDayCount() <= WeatherMessage.MAX_DAYS);
+                WeatherMessage again = new WeatherMessage();
+                assertTrue(again.decode(decoded.encode()));
+                assertSameMessage(decoded, again);
+            } else {
+                assertEquals(0, decoded.getDayCount());
+            }
+        }
+    }
+
+    /*
+        The watch decodes every message it gets into the same object, which must not allocate.
+     */
+    @Test
+    public void testDecodingDoesNotAllocate() {
+        assumeTrue(AllocationCounter.canMeasureAllocations());
+        WeatherMessage message = createMessage(new Random(SEED));
+        byte[] data = message.encode();
+        WeatherMessage decoded = new WeatherMessage();
+        for (int i = 0; i < 10000; i++) {
+            decoded.decode(data);
+        }
+
+        long overhead = AllocationCounter.measuringOverhead();
+        long allocated = AllocationCounter.allocatedBytes();
+        int checksum = 0;
+        for (int i = 0; i < 10000; i++) {
+            decoded.decode(data);
+            checksum += decoded.getDayCount();
+        }
+        allocated = AllocationCounter.allocatedBytes() - allocated - overhead;
+
+        assertEquals(10000 * message.getDayCount(), checksum);
+        assertTrue("Error: Decoding allocated " + allocated + " bytes", allocated < 1024);
+    }
+}
@@ -24,21 +24,28 @@ import android.content.res.Resources;
 import android.graphics.Bitmap;
 import android.graphics.BitmapFactory;
 import android.graphics.Canvas;
+import android.graphics.ColorMatrix;
+import android.graphics.ColorMatrixColorFilter;
 import android.graphics.Paint;
 import android.graphics.Rect;
 import android.graphics.Typeface;
 import android.os.AsyncTask;
 import android.os.Bundle;
+import android.os.Debug;
 import android.os.Handler;
 import android.os.Message;
 import android.support.wearable.watchface.CanvasWatchFaceService;
 import android.support.wearable.watchface.WatchFaceStyle;
 import android.text.TextPaint;
-import android.text.format.Time;
 import android.util.Log;
+import android.util.LruCache;
 import android.view.Gravity;
 import android.view.SurfaceHolder;
 
+import com.example.android.sunshine.shared.ClockText;
+import com.example.android.sunshine.shared.FrameStats;
+import com.example.android.sunshine.shared.WeatherConditions;
+import com.example.android.sunshine.shared.WeatherMessage;
 import com.google.android.gms.common.ConnectionResult;
 import com.google.android.gms.common.api.GoogleApiClient;
 import com.google.android.gms.common.api.ResultCallback;
@@ -49,7 +56,6 @@ import com.google.android.gms.wearable.NodeApi;
 import com.google.android.gms.wearable.Wearable;
 
 import java.lang.ref.WeakReference;
-import java.util.Calendar;
 import java.util.Locale;
 import java.util.TimeZone;
 import java.util.concurrent.TimeUnit;
@@ -69,6 +75,38 @@ public class SunshineWatchFace extends CanvasWatchFaceService{
      * Handler message id for updating the time periodically in interactive mode.
      */
     private static final int MSG_UPDATE_TIME = 0;
+
+    // How many frames debug builds add up before logging how long they took.
+    private static final int FRAME_STATS_INTERVAL = 60;
+
+    // Decoded art and ambient icons kept around: enough for the last couple of conditions.
+    private static final int WEATHER_BITMAP_CACHE_SIZE = 4;
+
+    // In low-bit ambient mode, icon pixels at least this opaque are drawn and the rest aren't.
+    private static final int LOW_BIT_ALPHA_THRESHOLD = 0x80;
+
+    // Indexed by WeatherConditions group.
+    private static final int[] ART_RESOURCES = {
+            R.drawable.art_storm,
+            R.drawable.art_light_rain,
+            R.drawable.art_rain,
+            R.drawable.art_snow,
+            R.drawable.art_fog,
+            R.drawable.art_clear,
+            R.drawable.art_light_clouds,
+            R.drawable.art_clouds,
+    };
+
+    private static final int[] ICON_RESOURCES = {
+            R.drawable.ic_storm,
+            R.drawable.ic_light_rain,
+            R.drawable.ic_rain,
+            R.drawable.ic_snow,
+            R.drawable.ic_fog,
+            R.drawable.ic_clear,
+            R.drawable.ic_light_clouds,
+            R.drawable.ic_cloudy,
+    };
     private GoogleApiClient mGoogleApiClient;
 
     @Override
@@ -79,21 +117,39 @@ public class SunshineWatchFace extends CanvasWatchFaceService{
     private class Engine extends CanvasWatchFaceService.Engine
             implements GoogleApiClient.ConnectionCallbacks, MessageApi.MessageListener
             , GoogleApiClient.OnConnectionFailedListener {
-        Paint mBackgroundPaintInteractive;
-        Paint mBackgroundPaintAmbient;
-        Paint mHandPaint;
+        int mBackgroundColorInteractive;
+        int mBackgroundColorAmbient;
+        int mScrimColor;
         boolean mAmbient;
-        Time mTime;
-        Bitmap mClearBitmap;
-        Bitmap mClearBitmapIcon;
-        Calendar mCalendar;
+        ClockText mClockText;
+
+        // The art for the weather, the width of the screen, and the icon shown in ambient mode
+        // instead, in grey or, on low-bit screens, in plain white without anti-aliasing.
+        Bitmap mArtBitmap;
+        Bitmap mAmbientIcon;
+        int mWeatherGroup = WeatherConditions.GROUP_CLEAR;
+        int mSurfaceWidth;
+
+        // Keyed by getWeatherBitmapKey.
+        final LruCache<Integer, Bitmap> mWeatherBitmaps =
+                new LruCache<>(WEATHER_BITMAP_CACHE_SIZE);
+
+        // The interactive background, art and scrim, drawn together once into a bitmap the size
+        // of the screen, so that a frame only has to copy that.  Redrawn when the art changes.
+        Bitmap mBackgroundBitmap;
+        boolean mBackgroundChanged = true;
+        Paint mBitmapPaint;
 
         private float mCenterX;
         private float mCenterY;
 
+        // The bold and the regular halves of the time and the temperatures have paints of
+        // their own, so that drawing doesn't switch typefaces back and forth.
         TextPaint mTextHourPaint;
+        TextPaint mTextMinutePaint;
         TextPaint mTextDatePaint;
-        TextPaint mTextTempPaint;
+        TextPaint mTextHighTempPaint;
+        TextPaint mTextLowTempPaint;
 
         private float mTextHourSize;
         private float mTextDateSize;
@@ -106,12 +162,24 @@ public class SunshineWatchFace extends CanvasWatchFaceService{
         private float mTextTempX;
         private float mTextTempY;
 
-        String mDate = "---";
+        // Measured when the text or its size changes, rather than on every frame.
+        private float mHourHalfWidth;
+        private float mHighTempHalfWidth;
+
+        // Only kept in debug builds.
+        FrameStats mFrameStats;
+
         String mHighTemp = "-";
         String mLowTemp = "-";
         int mWeatherId = 0;
 
-        float mScale = 1;
+        // The last forecast from the phone.  New ones are decoded into the spare message, and the
+        // two are swapped only if it could be read, so a bad message doesn't lose the forecast.
+        WeatherMessage mWeatherMessage = new WeatherMessage();
+        WeatherMessage mSpareWeatherMessage = new WeatherMessage();
+        // Which of its days is shown, so that the next one is shown once the date changes.
+        long mShownTimestamp;
+        int mShownJulianDay;
 
         private GoogleApiClient mGoogleApiClient;
         public static final String VOICE_TRANSCRIPTION_MESSAGE_PATH = "/weather_update";
@@ -121,8 +189,8 @@ public class SunshineWatchFace extends CanvasWatchFaceService{
         final BroadcastReceiver mTimeZoneReceiver = new BroadcastReceiver() {
             @Override
             public void onReceive(Context context, Intent intent) {
-                mTime.clear(intent.getStringExtra("time-zone"));
-                mTime.setToNow();
+                mClockText.setTimeZone(TimeZone.getDefault());
+                invalidate();
             }
         };
         boolean mRegisteredTimeZoneReceiver = false;
@@ -145,40 +213,25 @@ public class SunshineWatchFace extends CanvasWatchFaceService{
                     .build());
             Resources resources = SunshineWatchFace.this.getResources();
 
-            mBackgroundPaintInteractive = new Paint();
-            mBackgroundPaintInteractive.setColor(resources.getColor(R.color.primary));
-
-            mTextHourPaint = new TextPaint();
-            mTextHourPaint.setTextSize(50);
-            mTextHourPaint.setColor(resources.getColor(R.color.analog_white));
-            mTextHourPaint.setTextAlign(Paint.Align.CENTER);
-
-            mTextDatePaint = new TextPaint();
-            mTextDatePaint.setTextSize(50);
-            mTextDatePaint.setColor(resources.getColor(R.color.analog_white));
-            mTextDatePaint.setTextAlign(Paint.Align.CENTER);
+            mBackgroundColorInteractive = resources.getColor(R.color.primary);
+            mBackgroundColorAmbient = resources.getColor(R.color.analog_background);
+            mScrimColor = resources.getColor(R.color.scrim);
 
-            mTextTempPaint = new TextPaint();
-            mTextTempPaint.setTextSize(50);
-            mTextTempPaint.setColor(resources.getColor(R.color.analog_white));
-            mTextTempPaint.setTextAlign(Paint.Align.CENTER);
+            int textColor = resources.getColor(R.color.analog_white);
+            mTextHourPaint = createTextPaint(textColor, Typeface.DEFAULT_BOLD);
+            mTextHourPaint.setFakeBoldText(true);
+            mTextMinutePaint = createTextPaint(textColor, Typeface.DEFAULT);
+            mTextDatePaint = createTextPaint(textColor, Typeface.DEFAULT);
+            mTextHighTempPaint = createTextPaint(textColor, Typeface.DEFAULT_BOLD);
+            mTextLowTempPaint = createTextPaint(textColor, Typeface.DEFAULT);
 
-            mBackgroundPaintAmbient = new Paint();
-            mBackgroundPaintAmbient.setColor(resources.getColor(R.color.analog_background));
+            mBitmapPaint = new Paint();
+            mBitmapPaint.setFilterBitmap(true);
 
-            mClearBitmap = BitmapFactory.decodeResource(resources, R.drawable.art_clear);
-            mClearBitmapIcon = BitmapFactory.decodeResource(resources, R.drawable.ic_cloudy);
-
-            mHandPaint = new Paint();
-            mHandPaint.setColor(resources.getColor(R.color.analog_hands));
-            mHandPaint.setStrokeWidth(resources.getDimension(R.dimen.analog_hand_stroke));
-            mHandPaint.setAntiAlias(true);
-            mHandPaint.setStrokeCap(Paint.Cap.ROUND);
-
-            mTime = new Time();
-
-            mCalendar = Calendar.getInstance();
-            mCalendar.setTimeZone(TimeZone.getDefault());
+            mClockText = new ClockText(Locale.getDefault(), TimeZone.getDefault());
+            if (BuildConfig.DEBUG) {
+                mFrameStats = createFrameStats();
+            }
 
             mGoogleApiClient = new GoogleApiClient.Builder(SunshineWatchFace.this)
                     .addConnectionCallbacks(this)
@@ -189,17 +242,54 @@ public class SunshineWatchFace extends CanvasWatchFaceService{
 
         }
 
+        private TextPaint createTextPaint(int color, Typeface typeface) {
+            TextPaint paint = new TextPaint();
+            paint.setTextSize(50);
+            paint.setColor(color);
+            paint.setTypeface(typeface);
+            paint.setTextAlign(Paint.Align.CENTER);
+            paint.setAntiAlias(true);
+            return paint;
+        }
+
+        @SuppressWarnings("deprecation")
+        private FrameStats createFrameStats() {
+            // Counts the objects this thread allocates, which costs enough to keep out of
+            // release builds.
+            Debug.startAllocCounting();
+            return new FrameStats(new FrameStats.AllocationSource() {
+                @Override
+                public long getAllocations() {
+                    return Debug.getThreadAllocCount();
+                }
+            });
+        }
+
         @Override
         public void onDestroy() {
             mUpdateTimeHandler.removeMessages(MSG_UPDATE_TIME);
             Wearable.MessageApi.removeListener(mGoogleApiClient, this);
+            if (mFrameStats != null) {
+                stopAllocCounting();
+            }
             super.onDestroy();
         }
 
+        @SuppressWarnings("deprecation")
+        private void stopAllocCounting() {
+            Debug.stopAllocCounting();
+        }
+
         @Override
         public void onPropertiesChanged(Bundle properties) {
             super.onPropertiesChanged(properties);
-            mLowBitAmbient = properties.getBoolean(PROPERTY_LOW_BIT_AMBIENT, false);
+            boolean lowBitAmbient = properties.getBoolean(PROPERTY_LOW_BIT_AMBIENT, false);
+            if (lowBitAmbient != mLowBitAmbient) {
+                mLowBitAmbient = lowBitAmbient;
+                // The ambient icons were made for the other kind of screen.
+                mWeatherBitmaps.evictAll();
+                loadWeatherBitmaps();
+            }
         }
 
         @Override
@@ -214,7 +304,12 @@ public class SunshineWatchFace extends CanvasWatchFaceService{
             if (mAmbient != inAmbientMode) {
                 mAmbient = inAmbientMode;
                 if (mLowBitAmbient) {
-                    mHandPaint.setAntiAlias(!inAmbientMode);
+                    boolean antiAlias = !inAmbientMode;
+                    mTextHourPaint.setAntiAlias(antiAlias);
+                    mTextMinutePaint.setAntiAlias(antiAlias);
+                    mTextDatePaint.setAntiAlias(antiAlias);
+                    mTextHighTempPaint.setAntiAlias(antiAlias);
+                    mTextLowTempPaint.setAntiAlias(antiAlias);
                 }
                 invalidate();
             }
@@ -224,95 +319,90 @@ public class SunshineWatchFace extends CanvasWatchFaceService{
             updateTimer();
         }
 
+        /**
+         * Draws the face without allocating: the text only changes when the minute does, and it
+         * is measured then too.
+         */
         @Override
         public void onDraw(Canvas canvas, Rect bounds) {
-//            mTime.setToNow();
-            mCalendar.setTimeInMillis(System.currentTimeMillis());
-            mDate = mCalendar.toString();
-
-            mDate = mCalendar.getDisplayName(Calendar.DAY_OF_WEEK, Calendar.SHORT, Locale.getDefault())
-                    +", "+ mCalendar.getDisplayName(Calendar.MONTH, Calendar.SHORT, Locale.getDefault())
-                    +" "+mCalendar.get(Calendar.DAY_OF_MONTH)
-                    +" "+mCalendar.get(Calendar.YEAR)
-            ;
-            String hour = Integer.toString(mCalendar.get(Calendar.HOUR_OF_DAY))+":";
-            String minutes = String.format("%02d", mCalendar.get(Calendar.MINUTE));
-            float hours_halfwidth = mTextHourPaint.measureText(hour)/2f;
-            float temp_halfwidth = mTextTempPaint.measureText(mHighTemp)/2;
-
+            if (mFrameStats != null) {
+                mFrameStats.beginFrame();
+            }
+            if (mClockText.update(System.currentTimeMillis())) {
+                measureTime();
+                showTodaysWeather();
+            }
+            char[] hour = mClockText.getHour();
+            int hourLength = mClockText.getHourLength();
+            char[] minutes = mClockText.getMinutes();
 
             if (!mAmbient) {
-                // Draw the background.
                 /**
                  * Interactive Mode
                  */
 
                 /***** BACKGROUND *****/
-                canvas.drawColor(mBackgroundPaintInteractive.getColor());
-                canvas.drawBitmap(mClearBitmap, mCenterX - mClearBitmap.getWidth() / 2
-                        , mCenterY - mClearBitmap.getHeight() / 2, mHandPaint);
-
-                canvas.drawColor(getResources().getColor(R.color.scrim));
-                /***** HOURS ********/
-                mTextHourPaint.setFakeBoldText(true);
-                mTextHourPaint.setTypeface(Typeface.DEFAULT_BOLD);
-
-                /***** DATE ********/
-                canvas.drawText(hour, mTextHourX - hours_halfwidth, mTextHourY, mTextHourPaint);
-                mTextHourPaint.setFakeBoldText(false);
-                mTextHourPaint.setTypeface(Typeface.DEFAULT);
-                canvas.drawText(minutes, mTextHourX + hours_halfwidth, mTextHourY, mTextHourPaint);
-
-                canvas.drawText(mDate, mTextDateX, mTextDateY, mTextDatePaint);
-
-                /***** TEMP ********/
-                mTextTempPaint.setTypeface(Typeface.DEFAULT_BOLD);
-                canvas.drawText(mHighTemp, mTextTempX - temp_halfwidth, mTextTempY, mTextTempPaint);
-                mTextTempPaint.setTypeface(Typeface.DEFAULT);
-                canvas.drawText(mLowTemp, mTextTempX+temp_halfwidth, mTextTempY, mTextTempPaint);
-//
-//                float secX = (float) Math.sin(secRot) * secLength;
-//                float secY = (float) -Math.cos(secRot) * secLength;
-
-//                canvas.drawLine(mCenterX, mCenterY, mCenterX + secX, mCenterY + secY, mHandPaint);
-
+                if (mBackgroundChanged) {
+                    drawBackground();
+                }
+                canvas.drawBitmap(mBackgroundBitmap, 0, 0, null);
             } else {
-                // Draw the background.
                 /**
                  * Ambient Mode
                  */
-                canvas.drawColor(mBackgroundPaintAmbient.getColor());
-                /***** HOURS ********/
-                mTextHourPaint.setFakeBoldText(true);
-                mTextHourPaint.setTypeface(Typeface.DEFAULT_BOLD);
-
-                canvas.drawText(hour, mTextHourX - hours_halfwidth, mTextHourY, mTextHourPaint);
-                mTextHourPaint.setFakeBoldText(false);
-                mTextHourPaint.setTypeface(Typeface.DEFAULT);
-                canvas.drawText(minutes, mTextHourX + hours_halfwidth, mTextHourY, mTextHourPaint);
-
-                /***** DATE ********/
-                canvas.drawText(mDate, mTextDateX, mTextDateY, mTextDatePaint);
-
-                /***** TEMP ********/
-                mTextTempPaint.setTypeface(Typeface.DEFAULT_BOLD);
-                canvas.drawText(mHighTemp, mTextTempX - temp_halfwidth, mTextTempY, mTextTempPaint);
-                mTextTempPaint.setTypeface(Typeface.DEFAULT);
-                canvas.drawText(mLowTemp, mTextTempX+temp_halfwidth, mTextTempY, mTextTempPaint);
-
-//                canvas.drawRect(0, 0, canvas.getWidth(), canvas.getHeight(), mBackgroundPaintAmbient);
-                canvas.drawBitmap(mClearBitmapIcon, mCenterX - mClearBitmapIcon.getWidth()/2
-                        , mTextTempY+temp_halfwidth, mHandPaint);
+                canvas.drawColor(mBackgroundColorAmbient);
+            }
+
+            /***** HOURS ********/
+            canvas.drawText(hour, 0, hourLength, mTextHourX - mHourHalfWidth, mTextHourY,
+                    mTextHourPaint);
+            canvas.drawText(minutes, 0, minutes.length, mTextHourX + mHourHalfWidth, mTextHourY,
+                    mTextMinutePaint);
+
+            /***** DATE ********/
+            canvas.drawText(mClockText.getDate(), mTextDateX, mTextDateY, mTextDatePaint);
+
+            /***** TEMP ********/
+            canvas.drawText(mHighTemp, mTextTempX - mHighTempHalfWidth, mTextTempY,
+                    mTextHighTempPaint);
+            canvas.drawText(mLowTemp, mTextTempX + mHighTempHalfWidth, mTextTempY,
+                    mTextLowTempPaint);
+
+            if (mAmbient && mAmbientIcon != null) {
+                // Unfiltered: the icon was made for ambient mode already.
+                canvas.drawBitmap(mAmbientIcon, mCenterX - mAmbientIcon.getWidth()/2
+                        , mTextTempY + mHighTempHalfWidth, null);
+            }
+
+            if (mFrameStats != null) {
+                mFrameStats.endFrame();
+                if (mFrameStats.getFrameCount() == FRAME_STATS_INTERVAL) {
+                    Log.d("SunshineWear", "frames :: average " + mFrameStats.getAverageFrameNanos()
+                            + "ns, max " + mFrameStats.getMaxFrameNanos()
+                            + "ns, allocations " + mFrameStats.getTotalAllocations());
+                    mFrameStats.reset();
+                }
+            }
+        }
+
+        private void drawBackground() {
+            Canvas canvas = new Canvas(mBackgroundBitmap);
+            canvas.drawColor(mBackgroundColorInteractive);
+            if (mArtBitmap != null) {
+                canvas.drawBitmap(mArtBitmap, mCenterX - mArtBitmap.getWidth() / 2
+                        , mCenterY - mArtBitmap.getHeight() / 2, mBitmapPaint);
             }
+            canvas.drawColor(mScrimColor);
+            mBackgroundChanged = false;
+        }
 
-//            float minX = (float) Math.sin(minRot) * minLength;
-//            float minY = (float) -Math.cos(minRot) * minLength;
-//            canvas.drawLine(mCenterX, mCenterY, mCenterX + minX, mCenterY + minY, mHandPaint);
-//
-//            float hrX = (float) Math.sin(hrRot) * hrLength;
-//            float hrY = (float) -Math.cos(hrRot) * hrLength;
-//            canvas.drawLine(mCenterX, mCenterY, mCenterX + hrX, mCenterY + hrY, mHandPaint);
+        private void measureTime() {
+            mHourHalfWidth = mTextHourPaint.measureText(mClockText.getHour(), 0,
+                    mClockText.getHourLength()) / 2f;
+        }
 
+        private void measureTemperatures() {
+            mHighTempHalfWidth = mTextHighTempPaint.measureText(mHighTemp) / 2f;
         }
 
         @Override
@@ -323,8 +413,7 @@ public class SunshineWatchFace extends CanvasWatchFaceService{
                 registerReceiver();
 
                 // Update time zone in case it changed while we weren't visible.
-                mTime.clear(TimeZone.getDefault().getID());
-                mTime.setToNow();
+                mClockText.setTimeZone(TimeZone.getDefault());
             } else {
                 unregisterReceiver();
             }
@@ -346,12 +435,20 @@ public class SunshineWatchFace extends CanvasWatchFaceService{
             mCenterX = width / 2f;
             mCenterY = height / 2f;
 
-             /* Scale loaded background image (more efficient) if surface dimensions change. */
-            mScale = ((float) width) / (float) mClearBitmap.getWidth();
+            /* Decode the art for the new width. */
+            if (width != mSurfaceWidth) {
+                mSurfaceWidth = width;
+                mWeatherBitmaps.evictAll();
+            }
+            loadWeatherBitmaps();
 
-            mClearBitmap = Bitmap.createScaledBitmap(mClearBitmap,
-                    (int) (mClearBitmap.getWidth() * mScale),
-                    (int) (mClearBitmap.getHeight() * mScale), true);
+            if (mBackgroundBitmap == null || mBackgroundBitmap.getWidth() != width
+                    || mBackgroundBitmap.getHeight() != height) {
+                mBackgroundBitmap = Bitmap.createBitmap(width, height, Bitmap.Config.ARGB_8888);
+                // The background color covers the whole of it.
+                mBackgroundBitmap.setHasAlpha(false);
+            }
+            mBackgroundChanged = true;
 
 
             mTextHourSize = height/6f;
@@ -367,8 +464,13 @@ public class SunshineWatchFace extends CanvasWatchFaceService{
             mTextTempY = height/1.5f;
 
             mTextHourPaint.setTextSize(mTextHourSize);
+            mTextMinutePaint.setTextSize(mTextHourSize);
             mTextDatePaint.setTextSize(mTextDateSize);
-            mTextTempPaint.setTextSize(mTextTempSize);
+            mTextHighTempPaint.setTextSize(mTextTempSize);
+            mTextLowTempPaint.setTextSize(mTextTempSize);
+            mClockText.update(System.currentTimeMillis());
+            measureTime();
+            measureTemperatures();
         }
 
         private void registerReceiver() {
@@ -475,17 +577,45 @@ public class SunshineWatchFace extends CanvasWatchFaceService{
         public void onMessageReceived(MessageEvent messageEvent) {
             if (messageEvent.getPath().equalsIgnoreCase(VOICE_TRANSCRIPTION_MESSAGE_PATH)) {
 
-                String[] message = new String(messageEvent.getData()).split("::");
-                if(message.length != 0){
-                    mWeatherId = Integer.parseInt(message[0]);
-                    setArtResourceForWeatherCondition(mWeatherId, mAmbient);
-                    mHighTemp = message[1]+"º|";
-                    mLowTemp = message[2]+"º";
+                if (mSpareWeatherMessage.decode(messageEvent.getData())) {
+                    WeatherMessage previous = mWeatherMessage;
+                    mWeatherMessage = mSpareWeatherMessage;
+                    mSpareWeatherMessage = previous;
+                    if (mClockText.update(System.currentTimeMillis())) {
+                        measureTime();
+                    }
+                    mShownTimestamp = 0;
+                    showTodaysWeather();
+                    invalidate();
+                } else {
+                    Log.i("SunshineWear", "unreadable weather message, "
+                            + messageEvent.getData().length + " bytes");
                 }
-                Log.i("SunshineWear", "WUW :: " + new String(messageEvent.getData()));
             }
         }
 
+        /**
+         * Shows the day of the last forecast that is today on the watch, or its first day if the
+         * forecast doesn't have today.  Does nothing unless the forecast or the date changed.
+         */
+        private void showTodaysWeather() {
+            int julianDay = mClockText.getJulianDay();
+            if (mWeatherMessage.getDayCount() == 0
+                    || (mShownTimestamp == mWeatherMessage.getTimestamp()
+                    && mShownJulianDay == julianDay)) {
+                return;
+            }
+            mShownTimestamp = mWeatherMessage.getTimestamp();
+            mShownJulianDay = julianDay;
+
+            int day = Math.max(mWeatherMessage.findDay(julianDay), 0);
+            mWeatherId = mWeatherMessage.getWeatherId(day);
+            setArtResourceForWeatherCondition(mWeatherId);
+            mHighTemp = mWeatherMessage.toDisplayDegrees(mWeatherMessage.getHigh(day)) + "º|";
+            mLowTemp = mWeatherMessage.toDisplayDegrees(mWeatherMessage.getLow(day)) + "º";
+            measureTemperatures();
+        }
+
         @Override
         public void onConnectionFailed(ConnectionResult connectionResult) {
             Log.i("SunshineWear", "connection failed :: " + connectionResult.toString());
@@ -494,70 +624,103 @@ public class SunshineWatchFace extends CanvasWatchFaceService{
         /**** weather ******/
 
         /**
-         * copied from sunshine app
-         * Helper method to provide the art resource id according to the weather condition id returned
-         * by the OpenWeatherMap call.
+         * Shows the art and the icon for the weather condition id returned by the
+         * OpenWeatherMap call, falling back to clear skies for conditions without any.
          * @param weatherId from OpenWeatherMap API response
-         * @return resource id for the corresponding icon. -1 if no relation is found.
          */
-        public void setArtResourceForWeatherCondition(int weatherId, boolean ambient) {
-            // Based on weather code data found at:
-            // http://bugs.openweathermap.org/projects/api/wiki/Weather_Condition_Codes
+        public void setArtResourceForWeatherCondition(int weatherId) {
+            int group = WeatherConditions.getGroup(weatherId);
+            if (group == WeatherConditions.GROUP_NONE) {
+                group = WeatherConditions.GROUP_CLEAR;
+            }
+            if (group != mWeatherGroup) {
+                mWeatherGroup = group;
+                loadWeatherBitmaps();
+                invalidate();
+            }
+        }
+
+        private void loadWeatherBitmaps() {
+            if (mSurfaceWidth == 0) {
+                // Nothing to size the art for until the surface is there.
+                return;
+            }
+            mArtBitmap = getWeatherBitmap(mWeatherGroup, false);
+            mAmbientIcon = getWeatherBitmap(mWeatherGroup, true);
+            mBackgroundChanged = true;
+        }
+
+        private int getWeatherBitmapKey(int group, boolean ambient) {
+            return group * 2 + (ambient ? 1 : 0);
+        }
+
+        private Bitmap getWeatherBitmap(int group, boolean ambient) {
+            int key = getWeatherBitmapKey(group, ambient);
+            Bitmap bitmap = mWeatherBitmaps.get(key);
+            if (bitmap == null) {
+                bitmap = ambient
+                        ? createAmbientIcon(ICON_RESOURCES[group])
+                        : decodeArt(ART_RESOURCES[group], mSurfaceWidth);
+                mWeatherBitmaps.put(key, bitmap);
+            }
+            return bitmap;
+        }
+
+        /**
+         * Decodes the art sampled down as far as it goes while staying at least {@code width}
+         * wide, then scales it to exactly {@code width}, so the full size art is never in memory.
+         */
+        private Bitmap decodeArt(int resId, int width) {
             Resources resources = getResources();
+            BitmapFactory.Options options = new BitmapFactory.Options();
+            // Work in the image's own pixels; it is scaled to the screen below.
+            options.inScaled = false;
+            options.inJustDecodeBounds = true;
+            BitmapFactory.decodeResource(resources, resId, options);
+            int sampleSize = 1;
+            while (options.outWidth / (sampleSize * 2) >= width) {
+                sampleSize *= 2;
+            }
+            options.inJustDecodeBounds = false;
+            options.inSampleSize = sampleSize;
+            Bitmap sampled = BitmapFactory.decodeResource(resources, resId, options);
+            if (sampled.getWidth() == width) {
+                return sampled;
+            }
+            int height = Math.round(sampled.getHeight() * (float) width / sampled.getWidth());
+            Bitmap art = Bitmap.createScaledBitmap(sampled, width, height, true);
+            if (art != sampled) {
+                sampled.recycle();
+            }
+            return art;
+        }
 
-            if (weatherId >= 200 && weatherId <= 232) {
-                mClearBitmap = BitmapFactory.decodeResource(resources, R.drawable.art_storm);
-                mClearBitmapIcon = BitmapFactory.decodeResource(resources, R.drawable.ic_storm);
-//                return ambient? R.drawable.ic_storm : R.drawable.art_storm;
-            } else if (weatherId >= 300 && weatherId <= 321) {
-
-                mClearBitmap = BitmapFactory.decodeResource(resources, R.drawable.art_light_rain);
-                mClearBitmapIcon = BitmapFactory.decodeResource(resources, R.drawable.ic_light_rain);
-
-//                return ambient? R.drawable.ic_light_rain : R.drawable.art_light_rain;
-            } else if (weatherId >= 500 && weatherId <= 504) {
-                mClearBitmap = BitmapFactory.decodeResource(resources, R.drawable.art_rain);
-                mClearBitmapIcon = BitmapFactory.decodeResource(resources, R.drawable.ic_rain);
-//                return ambient? R.drawable.ic_rain : R.drawable.art_rain;
-            } else if (weatherId == 511) {
-                mClearBitmap = BitmapFactory.decodeResource(resources, R.drawable.art_snow);
-                mClearBitmapIcon = BitmapFactory.decodeResource(resources, R.drawable.ic_snow);
-//                return ambient? R.drawable.ic_snow : R.drawable.art_snow;
-            } else if (weatherId >= 520 && weatherId <= 531) {
-                mClearBitmap = BitmapFactory.decodeResource(resources, R.drawable.art_rain);
-                mClearBitmapIcon = BitmapFactory.decodeResource(resources, R.drawable.ic_rain);
-//                return ambient? R.drawable.ic_rain : R.drawable.art_rain;
-            } else if (weatherId >= 600 && weatherId <= 622) {
-                mClearBitmap = BitmapFactory.decodeResource(resources, R.drawable.art_snow);
-                mClearBitmapIcon = BitmapFactory.decodeResource(resources, R.drawable.ic_snow);
-//                return ambient? R.drawable.ic_snow :R.drawable.art_snow;
-            } else if (weatherId >= 701 && weatherId <= 761) {
-                mClearBitmap = BitmapFactory.decodeResource(resources, R.drawable.art_fog);
-                mClearBitmapIcon = BitmapFactory.decodeResource(resources, R.drawable.ic_fog);
-//                return ambient? R.drawable.ic_fog :R.drawable.art_fog;
-            } else if (weatherId == 761 || weatherId == 781) {
-                mClearBitmap = BitmapFactory.decodeResource(resources, R.drawable.art_storm);
-                mClearBitmapIcon = BitmapFactory.decodeResource(resources, R.drawable.ic_storm);
-//                return ambient? R.drawable.ic_storm :R.drawable.art_storm;
-            } else if (weatherId == 800) {
-                mClearBitmap = BitmapFactory.decodeResource(resources, R.drawable.art_clear);
-                mClearBitmapIcon = BitmapFactory.decodeResource(resources, R.drawable.ic_clear);
-//                return ambient? R.drawable.ic_clear :R.drawable.art_clear;
-            } else if (weatherId == 801) {
-                mClearBitmap = BitmapFactory.decodeResource(resources, R.drawable.art_light_clouds);
-                mClearBitmapIcon = BitmapFactory.decodeResource(resources, R.drawable.ic_light_clouds);
-//                return ambient? R.drawable.ic_light_clouds :R.drawable.art_light_clouds;
-            } else if (weatherId >= 802 && weatherId <= 804) {
-                mClearBitmap = BitmapFactory.decodeResource(resources, R.drawable.art_clouds);
-                mClearBitmapIcon = BitmapFactory.decodeResource(resources, R.drawable.ic_cloudy);
-//                return ambient? R.drawable.ic_cloudy :R.drawable.art_clouds;
+        /**
+         * Decodes the icon and turns it grey for ambient mode, or into a white silhouette with
+         * no partly transparent edges for screens with low-bit ambient mode.
+         */
+        private Bitmap createAmbientIcon(int resId) {
+            Bitmap icon = BitmapFactory.decodeResource(getResources(), resId);
+            Bitmap ambient = Bitmap.createBitmap(icon.getWidth(), icon.getHeight(),
+                    Bitmap.Config.ARGB_8888);
+            if (mLowBitAmbient) {
+                int[] pixels = new int[icon.getWidth() * icon.getHeight()];
+                icon.getPixels(pixels, 0, icon.getWidth(), 0, 0, icon.getWidth(),
+                        icon.getHeight());
+                for (int i = 0; i < pixels.length; i++) {
+                    pixels[i] = (pixels[i] >>> 24) >= LOW_BIT_ALPHA_THRESHOLD ? 0xffffffff : 0;
+                }
+                ambient.setPixels(pixels, 0, icon.getWidth(), 0, 0, icon.getWidth(),
+                        icon.getHeight());
             } else {
-                mClearBitmap = BitmapFactory.decodeResource(resources, R.drawable.art_clear);
-                mClearBitmapIcon = BitmapFactory.decodeResource(resources, R.drawable.ic_clear);
+                ColorMatrix greyscale = new ColorMatrix();
+                greyscale.setSaturation(0);
+                Paint paint = new Paint();
+                paint.setColorFilter(new ColorMatrixColorFilter(greyscale));
+                new Canvas(ambient).drawBitmap(icon, 0, 0, paint);
             }
-            mClearBitmap = Bitmap.createScaledBitmap(mClearBitmap,
-                    (int) (mClearBitmap.getWidth() * mScale),
-                    (int) (mClearBitmap.getHeight() * mScale), true);
+            icon.recycle();
+            return ambient;
         }
     }
 